@@ -0,0 +1,11 @@
+#! /bin/bash
+DBNAME=$1
+PORT=$2
+USER=$3
+
+# Benchmarks the data-access layer and reports against a database loaded
+# from ../data, e.g. after: source ./run.sh flightDB 5432 user load ../data
+# Example: source ./bench.sh flightDB 5432 user [warm-up s] [measure s] [name regex]
+mkdir -p bin
+javac -cp "lib/postgresql-42.1.4.jar" src/*.java bench/*.java -d bin/ &&
+java -cp lib/*:bin/ MechanicShopBench $DBNAME $PORT $USER "${@:4}"
@@ -0,0 +1,180 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * This class benchmarks the MechanicShop data-access layer and report
+ * queries against a database loaded from phase3/code/data.  Every benchmark
+ * is run single-threaded for a warm-up period and then a measurement period;
+ * the latency of every call is recorded, and throughput and latency
+ * percentiles are reported.  Printed output is discarded while measuring,
+ * so the printing benchmarks time result formatting, not the terminal.
+ *
+ * Rows inserted by the insert benchmarks are deleted afterwards.
+ *
+ */
+
+public class MechanicShopBench{
+	static final String MARKER = "BenchmarkRow";
+
+	//a single timed call
+	interface Op{
+		void run() throws Exception;
+	}
+
+	static class Benchmark{
+		final String name;
+		final Op op;
+
+		Benchmark(String name, Op op){
+			this.name = name;
+			this.op = op;
+		}
+	}
+
+	private final MechanicShop _esql;
+	//range of the customer ids inserted by the insert benchmarks
+	private int _minId = Integer.MAX_VALUE;
+	private int _maxId = Integer.MIN_VALUE;
+
+	MechanicShopBench(MechanicShop esql){
+		this._esql = esql;
+	}
+
+	/*
+	 * the benchmarks, in the order they are run.
+	 */
+	List<Benchmark> benchmarks(){
+		List<Benchmark> list = new ArrayList<Benchmark>();
+		list.add(new Benchmark("executeUpdate (text INSERT)", () -> {
+			int id = this._esql.nextId(MechanicShop.CUSTOMER_ID_SEQ);
+			inserted(id);
+			this._esql.executeUpdate(String.format(
+				"INSERT INTO Customer (id, fname, lname, phone, address) Values (%d, '%s', 'Bench', '(000)000-0000', 'Nowhere');",
+				id, MARKER));
+		}));
+		list.add(new Benchmark("executeUpdate (prepared INSERT)", () -> {
+			int id = this._esql.nextId(MechanicShop.CUSTOMER_ID_SEQ);
+			inserted(id);
+			this._esql.executeUpdate(MechanicShop.INSERT_CUSTOMER, id, MARKER, "Bench", "(000)000-0000", "Nowhere");
+		}));
+		list.add(new Benchmark("executeQueryAndReturnResult (Service_Request)", () ->
+			this._esql.executeQueryAndReturnResult("SELECT * FROM Service_Request")));
+		list.add(new Benchmark("executeQueryAndReturnColumns (Service_Request)", () ->
+			this._esql.executeQueryAndReturnColumns("SELECT * FROM Service_Request")));
+		list.add(new Benchmark("executeQueryAndPrintResult (Service_Request)", () ->
+			this._esql.executeQueryAndPrintResult("SELECT * FROM Service_Request")));
+		for (Map.Entry<String, String> report : MechanicShop.REPORTS.entrySet()){
+			final String query = report.getValue();
+			list.add(new Benchmark("report " + report.getKey(), () ->
+				this._esql.executeQueryAndPrintResult(query)));
+		}//end for
+		return list;
+	}
+
+	private void inserted(int id){
+		this._minId = Math.min(this._minId, id);
+		this._maxId = Math.max(this._maxId, id);
+	}
+
+	/*
+	 * runs op for warmupMillis, then records the latency of every call made
+	 * during measureMillis.
+	 */
+	static long[] measure(Op op, long warmupMillis, long measureMillis) throws Exception {
+		long end = System.nanoTime() + warmupMillis * 1000000L;
+		while (System.nanoTime() < end)
+			op.run();
+
+		long[] latencies = new long[1024];
+		int n = 0;
+		end = System.nanoTime() + measureMillis * 1000000L;
+		long now = System.nanoTime();
+		while (now < end){
+			long start = now;
+			op.run();
+			now = System.nanoTime();
+			if (n == latencies.length) latencies = Arrays.copyOf(latencies, n * 2);
+			latencies[n++] = now - start;
+		}//end while
+		return Arrays.copyOf(latencies, n);
+	}
+
+	static double percentile(long[] sorted, double p){
+		if (sorted.length == 0) return 0;
+		int i = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(i, sorted.length - 1))] / 1e6;
+	}
+
+	static void report(PrintStream out, String name, long[] latencies){
+		Arrays.sort(latencies);
+		long total = 0;
+		for (long l : latencies)
+			total += l;
+		double seconds = total / 1e9;
+		out.println(String.format("%-52s %8d %10.1f %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f",
+			name, latencies.length, latencies.length / Math.max(seconds, 1e-9),
+			latencies.length == 0 ? 0 : total / 1e6 / latencies.length,
+			percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+			percentile(latencies, 99.9), latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6));
+	}
+
+	/*
+	 * deletes the customers inserted by the insert benchmarks.
+	 */
+	void cleanup() throws Exception {
+		if (this._minId > this._maxId) return;
+		this._esql.executeUpdate("DELETE FROM Customer WHERE id BETWEEN ? AND ? AND fname = ?", this._minId, this._maxId, MARKER);
+		this._minId = Integer.MAX_VALUE;
+		this._maxId = Integer.MIN_VALUE;
+	}
+
+	/**
+	 * The main execution method
+	 *
+	 * @param args &lt;dbname&gt; &lt;port&gt; &lt;user&gt; [warm-up seconds] [measure seconds] [name regex]
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3){
+			System.err.println("Usage: java [-classpath <classpath>] " + MechanicShopBench.class.getName() +
+				" <dbname> <port> <user> [warm-up seconds] [measure seconds] [name regex]");
+			return;
+		}//end if
+		long warmup = (args.length > 3 ? Long.parseLong(args[3]) : 5) * 1000;
+		long measure = (args.length > 4 ? Long.parseLong(args[4]) : 10) * 1000;
+		Pattern filter = Pattern.compile(args.length > 5 ? args[5] : ".*");
+
+		Class.forName("org.postgresql.Driver");
+		MechanicShop esql = new MechanicShop(args[0], args[1], args[2], "");
+		MechanicShopBench bench = new MechanicShopBench(esql);
+		PrintStream out = System.out;
+		PrintStream discard = new PrintStream(new OutputStream(){
+			public void write(int b){ }
+			public void write(byte[] b, int off, int len){ }
+		});
+
+		out.println(String.format("%-52s %8s %10s %9s %9s %9s %9s %9s %9s",
+			"Benchmark", "ops", "ops/s", "mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+		try{
+			for (Benchmark b : bench.benchmarks()){
+				if (!filter.matcher(b.name).find()) continue;
+				long[] latencies;
+				System.setOut(discard);
+				try{
+					latencies = measure(b.op, warmup, measure);
+				}finally{
+					System.setOut(out);
+				}
+				report(out, b.name, latencies);
+				bench.cleanup();
+			}//end for
+		}finally{
+			bench.cleanup();
+			esql.cleanup();
+		}
+	}//end main
+}
@@ -0,0 +1,8 @@
+#! /bin/bash
+OUTDIR=$1
+SCALE=$2
+
+# Writes a synthetic data set SCALE times the size of ../data into OUTDIR,
+# ready for: source ./run.sh flightDB 5432 user load OUTDIR
+# Example: source ./generate.sh /tmp/data100 100 [threads] [seed]
+java -cp lib/*:bin/ DataGenerator ../data $OUTDIR $SCALE "${@:3}"
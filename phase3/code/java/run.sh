@@ -4,4 +4,8 @@ PORT=$2
 USER=$3
 
 # Example: source ./run.sh flightDB 5432 user
-java -cp lib/*:bin/ MechanicShop $DBNAME $PORT $USER
+# Example: source ./run.sh flightDB 5432 user load ../data
+# Example: source ./run.sh flightDB 5432 user pload ../data 8 16
+# Example: source ./run.sh flightDB 5432 user script nightly.jsonl
+# Example: source ./run.sh flightDB 5432 user export history history.jsonl json
+java -cp lib/*:bin/ MechanicShop $DBNAME $PORT $USER "${@:4}"
@@ -0,0 +1,300 @@
+import java.sql.BatchUpdateException;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class queues inserts and sends them to the server with JDBC batches,
+ * all inside one transaction on one pooled connection.  Pending rows are
+ * flushed whenever batchSize of them have been queued for any statement,
+ * and statements are flushed in the order they were first used so parent
+ * rows always reach the server before the rows that reference them.
+ *
+ * Nothing is visible to other sessions until commit is called; closing an
+ * uncommitted inserter rolls the work back.
+ *
+ * Rows can be tagged with where they came from, e.g. a script line; when a
+ * batch fails, the error names the tag of the first row that failed.  With
+ * reWriteBatchedInserts that is the first row of the failing multi-row
+ * INSERT.
+ *
+ */
+
+public class BatchInserter implements AutoCloseable{
+	private final ConnectionPool _pool;
+	private final ConnectionPool.PooledConnection _pc;
+	private final IdAllocator _ids;
+	private final CustomerCache _customers;
+	private final MechanicDirectory _mechanics;
+	private boolean _mechanicsAdded = false;
+	//last names of the customers inserted since the last commit
+	private final HashSet<String> _lnames = new HashSet<String>();
+	private final int _batchSize;
+	//tags of the pending rows per statement, in first-use order
+	private final LinkedHashMap<PreparedStatement, List<Object>> _pending = new LinkedHashMap<PreparedStatement, List<Object>>();
+	//tag of the rows queued next
+	private Object _tag = null;
+	private long _rows = 0;
+	private boolean _closed = false;
+
+	BatchInserter(ConnectionPool pool, IdAllocator ids, CustomerCache customers, MechanicDirectory mechanics, int batchSize) throws SQLException {
+		if (batchSize < 1) throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+		this._pool = pool;
+		this._ids = ids;
+		this._customers = customers;
+		this._mechanics = mechanics;
+		this._batchSize = batchSize;
+		this._pc = pool.borrow();
+		try{
+			this._pc.connection().setAutoCommit(false);
+		}catch (SQLException e){
+			pool.release(this._pc);
+			throw e;
+		}//end try
+	}
+
+	public void addCustomer(int id, String fname, String lname, String phone, String address) throws SQLException {
+		add(MechanicShop.INSERT_CUSTOMER, id, fname, lname, phone, address);
+		this._lnames.add(lname);
+	}
+
+	/**
+	 * Method to queue a customer whose id is allocated from customer_id_seq.
+	 *
+	 * @return the allocated id
+	 */
+	public int addCustomer(String fname, String lname, String phone, String address) throws SQLException {
+		int id = this._ids.next(MechanicShop.CUSTOMER_ID_SEQ);
+		addCustomer(id, fname, lname, phone, address);
+		return id;
+	}
+
+	public void addMechanic(int id, String fname, String lname, int experience) throws SQLException {
+		add(MechanicShop.INSERT_MECHANIC, id, fname, lname, experience);
+		this._mechanicsAdded = true;
+	}
+
+	/**
+	 * Method to queue a mechanic whose id is allocated from mechanic_id_seq.
+	 *
+	 * @return the allocated id
+	 */
+	public int addMechanic(String fname, String lname, int experience) throws SQLException {
+		int id = this._ids.next(MechanicShop.MECHANIC_ID_SEQ);
+		addMechanic(id, fname, lname, experience);
+		return id;
+	}
+
+	public void addCar(String vin, String make, String model, int year) throws SQLException {
+		add(MechanicShop.INSERT_CAR, vin, make, model, year);
+	}
+
+	public void addServiceRequest(int rid, int customerId, String carVin, Date date, int odometer, String complain) throws SQLException {
+		add(MechanicShop.INSERT_SERVICE_REQUEST, rid, customerId, carVin, date, odometer, complain);
+	}
+
+	/**
+	 * Method to queue a service request whose rid is allocated from
+	 * service_request_rid_seq.
+	 *
+	 * @return the allocated rid
+	 */
+	public int addServiceRequest(int customerId, String carVin, Date date, int odometer, String complain) throws SQLException {
+		int rid = this._ids.next(MechanicShop.RID_SEQ);
+		addServiceRequest(rid, customerId, carVin, date, odometer, complain);
+		return rid;
+	}
+
+	/**
+	 * Method to queue a service request the way the front desk opens one,
+	 * see MechanicShop.openServiceRequest, for an existing customer and car.
+	 * The ownership is inserted too when the customer does not own the car.
+	 */
+	public void openServiceRequest(int rid, int customerId, String carVin, Date date, int odometer, String complain) throws SQLException {
+		add(MechanicShop.OPEN_SERVICE_REQUEST,
+			customerId, null, null, null, null, false,
+			carVin, null, null, null, false,
+			null, customerId, carVin, customerId, carVin,
+			rid, customerId, carVin, date, odometer, complain);
+	}
+
+	/**
+	 * Method to queue a service request opened like openServiceRequest
+	 * whose rid is allocated from service_request_rid_seq.
+	 *
+	 * @return the allocated rid
+	 */
+	public int openServiceRequest(int customerId, String carVin, Date date, int odometer, String complain) throws SQLException {
+		int rid = this._ids.next(MechanicShop.RID_SEQ);
+		openServiceRequest(rid, customerId, carVin, date, odometer, complain);
+		return rid;
+	}
+
+	/**
+	 * Method to queue a call of the close_request function, which checks
+	 * the request, the mechanic and the date like the menu does.
+	 */
+	public void closeRequest(int wid, int rid, int mid, Date date, String comment, int bill) throws SQLException {
+		add(MechanicShop.CLOSE_REQUEST, rid, mid, date, comment, bill, wid);
+	}
+
+	/**
+	 * Method to queue a close_request call whose wid is allocated from
+	 * closed_request_wid_seq.
+	 *
+	 * @return the allocated wid
+	 */
+	public int closeRequest(int rid, int mid, Date date, String comment, int bill) throws SQLException {
+		int wid = this._ids.next(MechanicShop.WID_SEQ);
+		closeRequest(wid, rid, mid, date, comment, bill);
+		return wid;
+	}
+
+	public void addClosedRequest(int wid, int rid, int mid, Date date, String comment, int bill) throws SQLException {
+		add(MechanicShop.INSERT_CLOSED_REQUEST, wid, rid, mid, date, comment, bill);
+	}
+
+	/**
+	 * Method to queue a closed request whose wid is allocated from
+	 * closed_request_wid_seq.
+	 *
+	 * @return the allocated wid
+	 */
+	public int addClosedRequest(int rid, int mid, Date date, String comment, int bill) throws SQLException {
+		int wid = this._ids.next(MechanicShop.WID_SEQ);
+		addClosedRequest(wid, rid, mid, date, comment, bill);
+		return wid;
+	}
+
+	/**
+	 * Method to fix the order in which statements are flushed before any of
+	 * them is used, for callers that may queue a child row before the first
+	 * row of its parent table.
+	 *
+	 * @param sqls the INSERT statements, parent tables first
+	 * @throws java.sql.SQLException when a statement cannot be prepared
+	 */
+	public void flushOrder(String... sqls) throws SQLException {
+		for (String sql : sqls){
+			PreparedStatement stmt = this._pc.statements().prepare(sql);
+			if (!this._pending.containsKey(stmt)) this._pending.put(stmt, new ArrayList<Object>());
+		}//end for
+	}
+
+	/**
+	 * Method to set the tag of the rows queued from now on, or null for
+	 * none.
+	 */
+	public void tag(Object tag){
+		this._tag = tag;
+	}
+
+	/**
+	 * Method to queue one row for a parameterized insert.
+	 *
+	 * @param sql the INSERT statement with ? placeholders
+	 * @param params the values bound to the placeholders, in order
+	 * @throws java.sql.SQLException when a flush fails
+	 */
+	public void add(String sql, Object... params) throws SQLException {
+		if (this._closed) throw new SQLException("Batch is closed");
+		PreparedStatement stmt = this._pc.statements().prepare(sql);
+		for (int i = 0; i < params.length; ++i)
+			stmt.setObject(i + 1, params[i]);
+		stmt.addBatch();
+		List<Object> tags = this._pending.get(stmt);
+		if (tags == null){
+			tags = new ArrayList<Object>();
+			this._pending.put(stmt, tags);
+		}//end if
+		tags.add(this._tag);
+		if (tags.size() >= this._batchSize) flush();
+	}//end add
+
+	/**
+	 * Method to send every queued row to the server without committing.
+	 *
+	 * @throws java.sql.SQLException when a batch fails, naming the tag of
+	 * the first failed row
+	 */
+	public void flush() throws SQLException {
+		for (Map.Entry<PreparedStatement, List<Object>> e : this._pending.entrySet()){
+			List<Object> tags = e.getValue();
+			if (tags.isEmpty()) continue;
+			try{
+				e.getKey().executeBatch();
+				this._rows += tags.size();
+			}catch (BatchUpdateException b){
+				throw failed(b, tags);
+			}finally{
+				tags.clear();
+			}//end try
+		}//end for
+	}//end flush
+
+	/*
+	 * the error of a failed batch, led by the tag of its first failed row
+	 * and with the server's message rather than the driver's summary.
+	 */
+	private static SQLException failed(BatchUpdateException b, List<Object> tags){
+		int[] counts = b.getUpdateCounts();
+		int row = counts == null ? 0 : counts.length;
+		for (int i = 0; counts != null && i < counts.length; ++i){
+			if (counts[i] == Statement.EXECUTE_FAILED){
+				row = i;
+				break;
+			}//end if
+		}//end for
+		Object tag = row < tags.size() ? tags.get(row) : null;
+		SQLException cause = b.getNextException() != null ? b.getNextException() : b;
+		String message = (tag == null ? "" : tag + ": ") + cause.getMessage();
+		return new SQLException(message, cause.getSQLState(), b);
+	}
+
+	/**
+	 * Method to flush the queued rows and commit the transaction.  Cached
+	 * lookups of the inserted customers' last names are invalidated, and so
+	 * is the mechanic directory when mechanics were inserted.
+	 *
+	 * @return the number of rows inserted since the last commit
+	 * @throws java.sql.SQLException when a batch or the commit fails
+	 */
+	public long commit() throws SQLException {
+		flush();
+		this._pc.connection().commit();
+		if (this._customers != null){
+			for (String lname : this._lnames)
+				this._customers.invalidate(lname);
+		}//end if
+		this._lnames.clear();
+		if (this._mechanics != null && this._mechanicsAdded) this._mechanics.invalidate();
+		this._mechanicsAdded = false;
+		long rows = this._rows;
+		this._rows = 0;
+		return rows;
+	}//end commit
+
+	/**
+	 * Method to discard queued and flushed rows that were not committed and
+	 * return the connection to the pool.
+	 */
+	public void close(){
+		if (this._closed) return;
+		this._closed = true;
+		for (PreparedStatement stmt : this._pending.keySet()){
+			try{
+				stmt.clearBatch();
+			}catch (SQLException e){
+				// ignored.
+			}//end try
+		}//end for
+		// release rolls back whatever was not committed
+		this._pool.release(this._pc);
+	}//end close
+}
@@ -0,0 +1,312 @@
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.postgresql.copy.CopyIn;
+
+/**
+ * This class converts lines of a phase3 CSV file into PostgreSQL's binary
+ * COPY format and streams them into a COPY ... FROM STDIN WITH (FORMAT
+ * binary).  Integers and dates are parsed on the client, once, straight from
+ * the input bytes, so the server only copies fixed-width values instead of
+ * running its text input functions; dates in the M/D/YYYY HH:MM format of
+ * the data files never reach the server's DateStyle-dependent parser.  Text
+ * is sent as is, without COPY escaping.
+ *
+ * One text column may be marked free text: it takes every comma beyond the
+ * expected ones, so a complaint or comment containing commas still loads.
+ *
+ * Apart from growing its buffers for unusually long lines, the writer does
+ * not allocate per row.
+ *
+ */
+
+public class BinaryCopyWriter{
+	public enum FieldType { INT, DATE, TEXT }
+
+	static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0};
+	//binary dates count days from 2000-01-01
+	static final int PG_EPOCH_DAY = ColumnarResult.daysFromCivil(2000, 1, 1);
+
+	private final CopyIn _copy;
+	private final FieldType[] _types;
+	private final int _freeText;
+	//encoded rows waiting to be sent, flushed once _flushAt bytes are queued
+	private byte[] _out;
+	private int _pos = 0;
+	private final int _flushAt;
+	//the start of a line split across two feed calls
+	private byte[] _partial = new byte[256];
+	private int _partialLength = 0;
+	//field bounds of the current line
+	private final int[] _starts;
+	private final int[] _ends;
+	private long _lines = 0;
+	private long _rows = 0;
+
+	/**
+	 * @param copy an active binary COPY
+	 * @param types the column types, in file order
+	 * @param freeText the column that absorbs extra commas, or -1
+	 * @param bufferSize the number of bytes sent to the server per write
+	 */
+	public BinaryCopyWriter(CopyIn copy, FieldType[] types, int freeText, int bufferSize) throws SQLException {
+		if (freeText >= types.length || (freeText >= 0 && types[freeText] != FieldType.TEXT))
+			throw new IllegalArgumentException("Invalid free text column: " + freeText);
+		this._copy = copy;
+		this._types = types;
+		this._freeText = freeText;
+		this._flushAt = bufferSize;
+		this._out = new byte[bufferSize + 1024];
+		this._starts = new int[types.length];
+		this._ends = new int[types.length];
+
+		// header: signature, flags and header extension length
+		System.arraycopy(SIGNATURE, 0, this._out, 0, SIGNATURE.length);
+		this._pos = SIGNATURE.length;
+		putInt(0);
+		putInt(0);
+	}
+
+	/**
+	 * Method to convert and queue CSV data.  The data may end in the middle
+	 * of a line; the rest of the line is expected in the next call.
+	 *
+	 * @throws java.io.IOException when a line is malformed
+	 * @throws java.sql.SQLException when sending to the server fails
+	 */
+	public void feed(byte[] buf, int off, int len) throws IOException, SQLException {
+		int end = off + len;
+		int lineStart = off;
+		for (int i = off; i < end; ++i){
+			if (buf[i] != '\n') continue;
+			if (this._partialLength > 0){
+				appendPartial(buf, lineStart, i);
+				row(this._partial, 0, this._partialLength);
+				this._partialLength = 0;
+			}else{
+				row(buf, lineStart, i);
+			}//end if
+			lineStart = i + 1;
+		}//end for
+		if (lineStart < end) appendPartial(buf, lineStart, end);
+	}//end feed
+
+	/**
+	 * Method to convert a last line without a newline, send the trailer and
+	 * end the COPY.
+	 *
+	 * @return the number of rows copied
+	 * @throws java.io.IOException when the last line is malformed
+	 * @throws java.sql.SQLException when the COPY fails
+	 */
+	public long finish() throws IOException, SQLException {
+		if (this._partialLength > 0){
+			row(this._partial, 0, this._partialLength);
+			this._partialLength = 0;
+		}//end if
+		ensure(2);
+		putShort(-1);
+		flush();
+		long rows = this._copy.endCopy();
+		return rows >= 0 ? rows : this._rows;
+	}
+
+	private void appendPartial(byte[] buf, int from, int to){
+		int n = to - from;
+		if (this._partialLength + n > this._partial.length){
+			byte[] grown = new byte[Math.max(this._partial.length * 2, this._partialLength + n)];
+			System.arraycopy(this._partial, 0, grown, 0, this._partialLength);
+			this._partial = grown;
+		}//end if
+		System.arraycopy(buf, from, this._partial, this._partialLength, n);
+		this._partialLength += n;
+	}
+
+	/*
+	 * encodes one line, [from, to) of b without its newline.
+	 */
+	private void row(byte[] b, int from, int to) throws IOException, SQLException {
+		++this._lines;
+		if (to > from && b[to - 1] == '\r') --to;
+		if (to == from) return;
+		splitFields(b, from, to);
+
+		int n = this._types.length;
+		// a field takes a 4-byte length and at most 4 bytes for an INT or
+		// DATE, however short its text, or the bytes of its text
+		ensure(2 + 8 * n + (to - from));
+		putShort(n);
+		for (int f = 0; f < n; ++f){
+			int s = this._starts[f];
+			int e = this._ends[f];
+			// \N is the NULL marker of text COPY
+			if (e - s == 2 && b[s] == '\\' && b[s + 1] == 'N'){
+				putInt(-1);
+				continue;
+			}//end if
+			switch (this._types[f]){
+				case INT:
+					putInt(4);
+					putInt(parseInt(b, s, e));
+					break;
+				case DATE:
+					putInt(4);
+					putInt(parseDate(b, s, e) - PG_EPOCH_DAY);
+					break;
+				default:
+					putInt(e - s);
+					System.arraycopy(b, s, this._out, this._pos, e - s);
+					this._pos += e - s;
+			}
+		}//end for
+		++this._rows;
+		if (this._pos >= this._flushAt) flush();
+	}//end row
+
+	/*
+	 * finds the field bounds of a line; the free text column takes the
+	 * commas left over by the columns before and after it.
+	 */
+	private void splitFields(byte[] b, int from, int to) throws IOException {
+		int n = this._types.length;
+		int head = this._freeText >= 0 ? this._freeText : n - 1;
+		int p = from;
+		for (int f = 0; f < head; ++f){
+			int c = p;
+			while (c < to && b[c] != ',')
+				++c;
+			if (c == to) throw malformed("expected " + n + " fields");
+			this._starts[f] = p;
+			this._ends[f] = c;
+			p = c + 1;
+		}//end for
+		int q = to;
+		for (int f = n - 1; f > head; --f){
+			int c = q - 1;
+			while (c >= p && b[c] != ',')
+				--c;
+			if (c < p) throw malformed("expected " + n + " fields");
+			this._starts[f] = c + 1;
+			this._ends[f] = q;
+			q = c;
+		}//end for
+		this._starts[head] = p;
+		this._ends[head] = q;
+		if (this._freeText < 0){
+			for (int i = p; i < q; ++i)
+				if (b[i] == ',') throw malformed("expected " + n + " fields");
+		}//end if
+	}
+
+	private IOException malformed(String message){
+		return new IOException("line " + this._lines + ": " + message);
+	}
+
+	/**
+	 * Method to parse a decimal integer from [from, to) of b.
+	 */
+	int parseInt(byte[] b, int from, int to) throws IOException {
+		while (from < to && b[from] == ' ')
+			++from;
+		while (to > from && b[to - 1] == ' ')
+			--to;
+		boolean negative = from < to && b[from] == '-';
+		int i = negative ? from + 1 : from;
+		if (i == to) throw malformed("expected an integer");
+		long v = 0;
+		for (; i < to; ++i){
+			int d = b[i] - '0';
+			if (d < 0 || d > 9) throw malformed("expected an integer");
+			v = v * 10 + d;
+			if (v > 2147483648L) throw malformed("integer out of range");
+		}//end for
+		if (negative) v = -v;
+		if (v > Integer.MAX_VALUE) throw malformed("integer out of range");
+		return (int) v;
+	}
+
+	/**
+	 * Method to parse a date from [from, to) of b, as M/D/YYYY or
+	 * YYYY-MM-DD with an optional time that is ignored.  The year must
+	 * have four digits.
+	 *
+	 * @return days since 1970-01-01
+	 */
+	int parseDate(byte[] b, int from, int to) throws IOException {
+		int i = from;
+		while (i < to && b[i] == ' ')
+			++i;
+		int first = 0, firstDigits = 0;
+		while (i < to && b[i] >= '0' && b[i] <= '9'){
+			first = first * 10 + (b[i++] - '0');
+			++firstDigits;
+		}//end while
+		if (i == to || firstDigits == 0 || firstDigits > 4) throw malformed("expected a date");
+		byte sep = b[i++];
+		if (sep != '/' && sep != '-') throw malformed("expected a date");
+		int second = 0, secondDigits = 0;
+		while (i < to && b[i] >= '0' && b[i] <= '9' && secondDigits < 2){
+			second = second * 10 + (b[i++] - '0');
+			++secondDigits;
+		}//end while
+		if (i == to || b[i] != sep || secondDigits == 0) throw malformed("expected a date");
+		++i;
+		int third = 0, thirdDigits = 0;
+		while (i < to && b[i] >= '0' && b[i] <= '9' && thirdDigits < 4){
+			third = third * 10 + (b[i++] - '0');
+			++thirdDigits;
+		}//end while
+		if (thirdDigits == 0 || (i < to && b[i] != ' ' && b[i] != 'T')) throw malformed("expected a date");
+
+		//a short year like 3/4/95 would otherwise load as the year 95
+		int y, m, d;
+		if (sep == '-'){
+			if (thirdDigits > 2) throw malformed("expected a date");
+			if (firstDigits != 4) throw malformed("expected a four-digit year");
+			y = first;
+			m = second;
+			d = third;
+		}else{
+			if (firstDigits > 2) throw malformed("expected a date");
+			if (thirdDigits != 4) throw malformed("expected a four-digit year");
+			m = first;
+			d = second;
+			y = third;
+		}//end if
+		if (m < 1 || m > 12 || d < 1 || d > daysInMonth(y, m)) throw malformed("invalid date");
+		return ColumnarResult.daysFromCivil(y, m, d);
+	}
+
+	private static int daysInMonth(int y, int m){
+		switch (m){
+			case 2: return (y % 4 == 0 && (y % 100 != 0 || y % 400 == 0)) ? 29 : 28;
+			case 4: case 6: case 9: case 11: return 30;
+			default: return 31;
+		}
+	}
+
+	private void ensure(int n){
+		if (this._pos + n <= this._out.length) return;
+		byte[] grown = new byte[Math.max(this._out.length * 2, this._pos + n)];
+		System.arraycopy(this._out, 0, grown, 0, this._pos);
+		this._out = grown;
+	}
+
+	private void flush() throws SQLException {
+		if (this._pos == 0) return;
+		this._copy.writeToCopy(this._out, 0, this._pos);
+		this._pos = 0;
+	}
+
+	private void putShort(int v){
+		this._out[this._pos++] = (byte) (v >>> 8);
+		this._out[this._pos++] = (byte) v;
+	}
+
+	private void putInt(int v){
+		this._out[this._pos++] = (byte) (v >>> 24);
+		this._out[this._pos++] = (byte) (v >>> 16);
+		this._out[this._pos++] = (byte) (v >>> 8);
+		this._out[this._pos++] = (byte) v;
+	}
+}
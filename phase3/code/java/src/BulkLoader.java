@@ -0,0 +1,240 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * This class loads the phase3 CSV files into the database by streaming them
+ * through COPY ... FROM STDIN, so the files only have to exist on the client
+ * machine.  Tables are loaded in foreign key order and progress and
+ * throughput are reported per table.
+ *
+ */
+
+public class BulkLoader{
+	//default size of the buffer used to stream a file to the server
+	static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+	//progress is reported every time this many bytes have been sent
+	static final long PROGRESS_INTERVAL = 8L << 20;
+	//tables with column types are sent in the binary COPY format unless this is false
+	static final boolean BINARY_COPY = !"false".equals(System.getProperty("mechanicshop.binaryCopy"));
+
+	/**
+	 * A table of the schema together with the columns and file it is loaded
+	 * from, as in the COPY statements of sql/create.sql, and the sequence
+	 * that allocates its ids, if any.  A table with column types is loaded
+	 * through BinaryCopyWriter.
+	 */
+	public static class Table{
+		public final String name;
+		public final String columns;
+		public final String file;
+		public final String key;
+		public final String sequence;
+		public final BinaryCopyWriter.FieldType[] types;
+		public final int freeText;
+
+		Table(String name, String columns, String file, String key, String sequence){
+			this(name, columns, file, key, sequence, null, -1);
+		}
+
+		Table(String name, String columns, String file, String key, String sequence,
+				BinaryCopyWriter.FieldType[] types, int freeText){
+			this.name = name;
+			this.columns = columns;
+			this.file = file;
+			this.key = key;
+			this.sequence = sequence;
+			this.types = types;
+			this.freeText = freeText;
+		}
+
+		String copySql(){
+			return "COPY " + this.name + " (" + this.columns + ") FROM STDIN WITH DELIMITER ','";
+		}
+
+		String binaryCopySql(){
+			return "COPY " + this.name + " (" + this.columns + ") FROM STDIN WITH (FORMAT binary)";
+		}
+	}
+
+	private static final BinaryCopyWriter.FieldType INT = BinaryCopyWriter.FieldType.INT;
+	private static final BinaryCopyWriter.FieldType DATE = BinaryCopyWriter.FieldType.DATE;
+	private static final BinaryCopyWriter.FieldType TEXT = BinaryCopyWriter.FieldType.TEXT;
+
+	//every table, parents before children
+	public static final List<Table> TABLES = Arrays.asList(
+		new Table("Customer", "id, fname, lname, phone, address", "customer.csv", "id", MechanicShop.CUSTOMER_ID_SEQ),
+		new Table("Mechanic", "id, fname, lname, experience", "mechanic.csv", "id", MechanicShop.MECHANIC_ID_SEQ),
+		new Table("Car", "vin, make, model, year", "car.csv", "vin", null),
+		new Table("Owns", "ownership_id, customer_id, car_vin", "owns.csv", "ownership_id", MechanicShop.OWNERSHIP_ID_SEQ),
+		new Table("Service_Request", "rid, customer_id, car_vin, date, odometer, complain", "service_request.csv", "rid", MechanicShop.RID_SEQ,
+			new BinaryCopyWriter.FieldType[]{ INT, INT, TEXT, DATE, INT, TEXT }, 5),
+		new Table("Closed_Request", "wid, rid, mid, date, comment, bill", "closed_request.csv", "wid", MechanicShop.WID_SEQ,
+			new BinaryCopyWriter.FieldType[]{ INT, INT, INT, DATE, TEXT, INT }, 4)
+	);
+
+	private final int _bufferSize;
+	private final PrintStream _progress;
+
+	public BulkLoader(int bufferSize, PrintStream progress){
+		if (bufferSize <= 0) throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+		this._bufferSize = bufferSize;
+		this._progress = progress;
+	}
+
+	/**
+	 * Method to load every table from the CSV files in a directory.
+	 *
+	 * @param connection the connection to load through
+	 * @param dataDir the directory holding the CSV files
+	 * @return the total number of rows loaded
+	 * @throws java.sql.SQLException when a COPY fails
+	 * @throws java.io.IOException when a file cannot be read
+	 */
+	public long loadAll(Connection connection, File dataDir) throws SQLException, IOException {
+		long start = System.nanoTime();
+		long rows = 0;
+		for (Table table : TABLES)
+			rows += load(connection, table, new File(dataDir, table.file));
+		for (Table table : TABLES)
+			resyncSequence(connection, table);
+		report("Total", rows, -1, System.nanoTime() - start);
+		return rows;
+	}//end loadAll
+
+	/**
+	 * Method to move the id sequence of a table past the largest id it
+	 * holds, so ids handed out after a load do not collide with loaded rows.
+	 *
+	 * @param connection the connection to use
+	 * @param table the table whose sequence is moved
+	 * @throws java.sql.SQLException when the sequence cannot be updated
+	 */
+	public static void resyncSequence(Connection connection, Table table) throws SQLException {
+		if (table.sequence == null) return;
+		Statement stmt = connection.createStatement();
+		try{
+			stmt.execute(String.format("SELECT setval('%s', (SELECT COALESCE(MAX(%s), 0) + 1 FROM %s), false)",
+				table.sequence, table.key, table.name));
+		}finally{
+			stmt.close();
+		}
+	}//end resyncSequence
+
+	/**
+	 * Method to stream one CSV file into its table.
+	 *
+	 * @param connection the connection to load through
+	 * @param table the table to load
+	 * @param file the CSV file
+	 * @return the number of rows loaded
+	 * @throws java.sql.SQLException when the COPY fails
+	 * @throws java.io.IOException when the file cannot be read
+	 */
+	public long load(Connection connection, Table table, File file) throws SQLException, IOException {
+		InputStream in = new FileInputStream(file);
+		try{
+			return load(connection, table, in, file.length());
+		}finally{
+			in.close();
+		}
+	}//end load
+
+	/**
+	 * Method to stream CSV data into a table.
+	 *
+	 * @param connection the connection to load through
+	 * @param table the table to load
+	 * @param in the CSV data, in the format of the phase3 data files
+	 * @param length the number of bytes expected, or -1 when unknown
+	 * @return the number of rows loaded
+	 * @throws java.sql.SQLException when the COPY fails
+	 * @throws java.io.IOException when the data cannot be read
+	 */
+	public long load(Connection connection, Table table, InputStream in, long length) throws SQLException, IOException {
+		if (BINARY_COPY && table.types != null) return loadBinary(connection, table, in, length);
+		CopyManager copy = connection.unwrap(PGConnection.class).getCopyAPI();
+		long start = System.nanoTime();
+		long sent = 0;
+		long nextReport = PROGRESS_INTERVAL;
+		byte[] buf = new byte[this._bufferSize];
+
+		CopyIn copyIn = copy.copyIn(table.copySql());
+		try{
+			int n;
+			while ((n = in.read(buf)) > 0){
+				copyIn.writeToCopy(buf, 0, n);
+				sent += n;
+				if (sent >= nextReport){
+					progress(table.name, sent, length, System.nanoTime() - start);
+					nextReport += PROGRESS_INTERVAL;
+				}//end if
+			}//end while
+			long rows = copyIn.endCopy();
+			report(table.name, rows, sent, System.nanoTime() - start);
+			return rows;
+		}finally{
+			if (copyIn.isActive()) copyIn.cancelCopy();
+		}
+	}//end load
+
+	/*
+	 * streams CSV data into a table in the binary COPY format, converting
+	 * it with a BinaryCopyWriter.
+	 */
+	private long loadBinary(Connection connection, Table table, InputStream in, long length) throws SQLException, IOException {
+		CopyManager copy = connection.unwrap(PGConnection.class).getCopyAPI();
+		long start = System.nanoTime();
+		long read = 0;
+		long nextReport = PROGRESS_INTERVAL;
+		byte[] buf = new byte[this._bufferSize];
+
+		CopyIn copyIn = copy.copyIn(table.binaryCopySql());
+		try{
+			BinaryCopyWriter writer = new BinaryCopyWriter(copyIn, table.types, table.freeText, this._bufferSize);
+			int n;
+			while ((n = in.read(buf)) > 0){
+				writer.feed(buf, 0, n);
+				read += n;
+				if (read >= nextReport){
+					progress(table.name, read, length, System.nanoTime() - start);
+					nextReport += PROGRESS_INTERVAL;
+				}//end if
+			}//end while
+			long rows = writer.finish();
+			report(table.name, rows, read, System.nanoTime() - start);
+			return rows;
+		}catch (IOException e){
+			throw new IOException(table.file + ", " + e.getMessage(), e);
+		}finally{
+			if (copyIn.isActive()) copyIn.cancelCopy();
+		}
+	}//end loadBinary
+
+	private void progress(String table, long sent, long length, long nanos){
+		if (this._progress == null) return;
+		double seconds = nanos / 1e9;
+		String percent = length > 0 ? String.format(" (%.0f%%)", 100.0 * sent / length) : "";
+		this._progress.println(String.format("%s: %.1f MB sent%s, %.1f MB/s",
+			table, sent / 1048576.0, percent, sent / 1048576.0 / seconds));
+	}
+
+	private void report(String table, long rows, long bytes, long nanos){
+		if (this._progress == null) return;
+		double seconds = Math.max(nanos / 1e9, 1e-9);
+		String size = bytes >= 0 ? String.format(", %.1f MB, %.1f MB/s", bytes / 1048576.0, bytes / 1048576.0 / seconds) : "";
+		this._progress.println(String.format("%s: %d rows in %.2f s, %.0f rows/s%s",
+			table, rows, seconds, rows / seconds, size));
+	}
+}
@@ -0,0 +1,353 @@
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * This class holds a query result column by column.  Integer columns are
+ * kept in int[], bigint columns in long[], dates as int[] days since
+ * 1970-01-01, and text columns as dictionary codes into a shared list of
+ * distinct values, falling back to a plain String[] once a column has more
+ * than DICTIONARY_LIMIT distinct values.  NULLs are tracked in a bit set per
+ * column.
+ *
+ * Rows are numbered from 0 and columns from 1, as in JDBC.
+ *
+ */
+
+public class ColumnarResult{
+	public enum ColumnType { INT, LONG, DATE, TEXT }
+
+	//distinct values a text column may hold before it stops being dictionary encoded
+	static final int DICTIONARY_LIMIT = 4096;
+
+	private final String[] _names;
+	private final ColumnType[] _types;
+	private final Column[] _columns;
+	private int _rowCount = 0;
+
+	private ColumnarResult(String[] names, ColumnType[] types){
+		this._names = names;
+		this._types = types;
+		this._columns = new Column[types.length];
+		for (int i = 0; i < types.length; ++i){
+			switch (types[i]){
+				case INT: case DATE: this._columns[i] = new IntColumn(); break;
+				case LONG: this._columns[i] = new LongColumn(); break;
+				default: this._columns[i] = new TextColumn(); break;
+			}
+		}
+	}
+
+	/**
+	 * Method to read every remaining row of a result set into a new
+	 * columnar result.  The result set is not closed.
+	 *
+	 * @param rs the result set positioned before its first row
+	 * @return the materialized result
+	 * @throws java.sql.SQLException when reading the result set fails
+	 */
+	public static ColumnarResult from(ResultSet rs) throws SQLException {
+		ResultSetMetaData rsmd = rs.getMetaData();
+		int numCol = rsmd.getColumnCount();
+		String[] names = new String[numCol];
+		ColumnType[] types = new ColumnType[numCol];
+		for (int i = 1; i <= numCol; ++i){
+			names[i - 1] = rsmd.getColumnName(i);
+			types[i - 1] = typeOf(rsmd.getColumnType(i));
+		}//end for
+
+		ColumnarResult result = new ColumnarResult(names, types);
+		while (rs.next()){
+			int row = result._rowCount;
+			for (int i = 0; i < numCol; ++i)
+				result._columns[i].read(rs, i + 1, row, types[i]);
+			++result._rowCount;
+		}//end while
+		for (Column c : result._columns)
+			c.trim(result._rowCount);
+		return result;
+	}//end from
+
+	private static ColumnType typeOf(int sqlType){
+		switch (sqlType){
+			case Types.INTEGER: case Types.SMALLINT: case Types.TINYINT: return ColumnType.INT;
+			case Types.BIGINT: return ColumnType.LONG;
+			case Types.DATE: return ColumnType.DATE;
+			default: return ColumnType.TEXT;
+		}
+	}
+
+	public int rowCount(){
+		return this._rowCount;
+	}
+
+	public int columnCount(){
+		return this._names.length;
+	}
+
+	public String columnName(int col){
+		return this._names[col - 1];
+	}
+
+	public ColumnType columnType(int col){
+		return this._types[col - 1];
+	}
+
+	/**
+	 * Method to find a column by name, ignoring case.
+	 *
+	 * @return the 1-based column index, or -1 when there is no such column
+	 */
+	public int findColumn(String name){
+		for (int i = 0; i < this._names.length; ++i)
+			if (this._names[i].equalsIgnoreCase(name)) return i + 1;
+		return -1;
+	}
+
+	public boolean isNull(int row, int col){
+		return this._columns[col - 1].nulls.get(row);
+	}
+
+	/**
+	 * Method to read an INT or DATE column; dates are returned as days since
+	 * 1970-01-01.  NULL reads as 0.
+	 */
+	public int getInt(int row, int col){
+		return ((IntColumn) this._columns[col - 1]).values[row];
+	}
+
+	/**
+	 * Method to read an INT, DATE or LONG column as a long.  NULL reads as 0.
+	 */
+	public long getLong(int row, int col){
+		Column c = this._columns[col - 1];
+		if (c instanceof LongColumn) return ((LongColumn) c).values[row];
+		return ((IntColumn) c).values[row];
+	}
+
+	public LocalDate getDate(int row, int col){
+		if (isNull(row, col)) return null;
+		return LocalDate.ofEpochDay(getInt(row, col));
+	}
+
+	/**
+	 * Method to read any column as text, formatted the way the driver would
+	 * have returned it.  NULL reads as null.
+	 */
+	public String getString(int row, int col){
+		if (isNull(row, col)) return null;
+		switch (this._types[col - 1]){
+			case INT: return Integer.toString(getInt(row, col));
+			case LONG: return Long.toString(getLong(row, col));
+			case DATE: return getDate(row, col).toString();
+			default: return ((TextColumn) this._columns[col - 1]).get(row);
+		}
+	}
+
+	/**
+	 * Method to return the dictionary code of a text value, so callers can
+	 * group on a low-cardinality column without comparing strings.  Returns
+	 * -1 when the column is not dictionary encoded or the value is NULL.
+	 */
+	public int getCode(int row, int col){
+		TextColumn c = (TextColumn) this._columns[col - 1];
+		if (c.codes == null || c.nulls.get(row)) return -1;
+		return c.codes[row];
+	}
+
+	/**
+	 * Method to return the distinct values of a dictionary encoded text
+	 * column, indexed by code, or null when the column is not encoded.
+	 */
+	public List<String> dictionary(int col){
+		TextColumn c = (TextColumn) this._columns[col - 1];
+		return c.codes == null ? null : c.dictionary;
+	}
+
+	/**
+	 * Method to return a reusable view over the rows of this result.  The
+	 * view is moved with at(row) and allocates nothing per row.
+	 */
+	public Row row(){
+		return new Row();
+	}
+
+	/**
+	 * Method to copy the result into the list-of-records form returned by
+	 * MechanicShop.executeQueryAndReturnResult.
+	 */
+	public List<List<String>> toList(){
+		List<List<String>> result = new ArrayList<List<String>>(this._rowCount);
+		for (int r = 0; r < this._rowCount; ++r){
+			List<String> record = new ArrayList<String>(this._names.length);
+			for (int c = 1; c <= this._names.length; ++c)
+				record.add(getString(r, c));
+			result.add(record);
+		}//end for
+		return result;
+	}
+
+	/**
+	 * A movable cursor over the rows of the enclosing result.
+	 */
+	public class Row{
+		private int _row = 0;
+
+		public Row at(int row){
+			if (row < 0 || row >= _rowCount) throw new IndexOutOfBoundsException("row " + row);
+			this._row = row;
+			return this;
+		}
+
+		public int index(){ return this._row; }
+		public boolean isNull(int col){ return ColumnarResult.this.isNull(this._row, col); }
+		public int getInt(int col){ return ColumnarResult.this.getInt(this._row, col); }
+		public long getLong(int col){ return ColumnarResult.this.getLong(this._row, col); }
+		public LocalDate getDate(int col){ return ColumnarResult.this.getDate(this._row, col); }
+		public String getString(int col){ return ColumnarResult.this.getString(this._row, col); }
+		public int getCode(int col){ return ColumnarResult.this.getCode(this._row, col); }
+	}
+
+	private static abstract class Column{
+		final BitSet nulls = new BitSet();
+
+		abstract void read(ResultSet rs, int col, int row, ColumnType type) throws SQLException;
+		abstract void trim(int rows);
+	}
+
+	private static final class IntColumn extends Column{
+		int[] values = new int[64];
+
+		void read(ResultSet rs, int col, int row, ColumnType type) throws SQLException {
+			if (row == this.values.length) this.values = Arrays.copyOf(this.values, row * 2);
+			if (type == ColumnType.DATE){
+				String s = rs.getString(col);
+				if (s == null) nulls.set(row);
+				else this.values[row] = epochDay(s);
+			}else{
+				this.values[row] = rs.getInt(col);
+				if (rs.wasNull()) nulls.set(row);
+			}//end if
+		}
+
+		void trim(int rows){
+			this.values = Arrays.copyOf(this.values, rows);
+		}
+	}
+
+	private static final class LongColumn extends Column{
+		long[] values = new long[64];
+
+		void read(ResultSet rs, int col, int row, ColumnType type) throws SQLException {
+			if (row == this.values.length) this.values = Arrays.copyOf(this.values, row * 2);
+			this.values[row] = rs.getLong(col);
+			if (rs.wasNull()) nulls.set(row);
+		}
+
+		void trim(int rows){
+			this.values = Arrays.copyOf(this.values, rows);
+		}
+	}
+
+	private static final class TextColumn extends Column{
+		//dictionary form, dropped once the column has too many distinct values
+		int[] codes = new int[64];
+		ArrayList<String> dictionary = new ArrayList<String>();
+		HashMap<String, Integer> lookup = new HashMap<String, Integer>();
+		//plain form
+		String[] values = null;
+
+		void read(ResultSet rs, int col, int row, ColumnType type) throws SQLException {
+			String s = rs.getString(col);
+			if (s == null) nulls.set(row);
+			if (this.codes != null){
+				if (row == this.codes.length) this.codes = Arrays.copyOf(this.codes, row * 2);
+				if (s == null) return;
+				Integer code = this.lookup.get(s);
+				if (code == null){
+					if (this.dictionary.size() < DICTIONARY_LIMIT){
+						code = this.dictionary.size();
+						this.dictionary.add(s);
+						this.lookup.put(s, code);
+					}else{
+						decode(row);
+					}//end if
+				}//end if
+				if (this.codes != null){
+					this.codes[row] = code;
+					return;
+				}//end if
+			}//end if
+			if (row == this.values.length) this.values = Arrays.copyOf(this.values, row * 2);
+			this.values[row] = s;
+		}
+
+		String get(int row){
+			return this.codes != null ? this.dictionary.get(this.codes[row]) : this.values[row];
+		}
+
+		/*
+		 * switches the column from dictionary codes to plain strings for the
+		 * first rows rows.
+		 */
+		private void decode(int rows){
+			this.values = new String[Math.max(64, this.codes.length)];
+			for (int r = 0; r < rows; ++r)
+				if (!nulls.get(r)) this.values[r] = this.dictionary.get(this.codes[r]);
+			this.codes = null;
+			this.dictionary = null;
+			this.lookup = null;
+		}
+
+		void trim(int rows){
+			if (this.codes != null){
+				this.codes = Arrays.copyOf(this.codes, rows);
+				this.lookup = null;
+			}else{
+				this.values = Arrays.copyOf(this.values, rows);
+			}//end if
+		}
+	}
+
+	/*
+	 * converts an ISO yyyy-mm-dd date to days since 1970-01-01 without
+	 * allocating, falling back to LocalDate for anything else.
+	 */
+	static int epochDay(String s){
+		if (s.length() != 10 || s.charAt(4) != '-' || s.charAt(7) != '-')
+			return (int) LocalDate.parse(s).toEpochDay();
+		int y = digits(s, 0, 4);
+		int m = digits(s, 5, 7);
+		int d = digits(s, 8, 10);
+		return daysFromCivil(y, m, d);
+	}
+
+	static int digits(CharSequence s, int from, int to){
+		int v = 0;
+		for (int i = from; i < to; ++i){
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') throw new NumberFormatException("Not a digit in " + s);
+			v = v * 10 + (c - '0');
+		}
+		return v;
+	}
+
+	/*
+	 * days since 1970-01-01 of a proleptic Gregorian date.
+	 */
+	static int daysFromCivil(int y, int m, int d){
+		y -= m <= 2 ? 1 : 0;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yoe = y - era * 400;
+		int doy = (153 * (m + (m > 2 ? -3 : 9)) + 2) / 5 + d - 1;
+		int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097 + doe - 719468;
+	}
+}
@@ -0,0 +1,228 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class defines a bounded pool of physical PostgreSQL connections.  At
+ * most maxSize connections are open at any time, minSize of them are opened
+ * up front and idle connections above minSize are closed after
+ * idleTimeoutMillis.  A connection that sat idle for longer than
+ * VALIDATION_IDLE_MILLIS is validated before it is handed out; one returned
+ * more recently is handed out as is, since release already drops
+ * connections the driver closed after a failure.  Each pooled connection
+ * carries its own statement cache.
+ *
+ */
+
+public class ConnectionPool{
+	//seconds a validation round trip may take before the connection is discarded
+	static final int VALIDATION_TIMEOUT = 2;
+	//milliseconds a connection may sit idle and still be handed out without a validation round trip
+	static final long VALIDATION_IDLE_MILLIS = Long.getLong("mechanicshop.validationIdleMillis", 5000);
+
+	private final String _url;
+	private final String _user;
+	private final String _passwd;
+	private final int _minSize;
+	private final int _maxSize;
+	private final long _idleTimeoutMillis;
+	private final long _borrowTimeoutMillis;
+
+	//bounds the number of connections that are open or being opened
+	private final Semaphore _permits;
+	//idle connections, most recently returned first
+	private final ArrayDeque<PooledConnection> _idle = new ArrayDeque<PooledConnection>();
+	private final ScheduledExecutorService _evictor;
+	private volatile boolean _closed = false;
+
+	/**
+	 * A physical connection on loan from the pool together with the prepared
+	 * statements cached on it.
+	 */
+	public static class PooledConnection{
+		private final Connection _connection;
+		private final StatementCache _statements;
+		private long _lastUsed;
+
+		PooledConnection(Connection connection){
+			this._connection = connection;
+			this._statements = new StatementCache(connection, MechanicShop.STATEMENT_CACHE_SIZE, MechanicShop.PREPARE_THRESHOLD);
+			this._lastUsed = System.currentTimeMillis();
+		}
+
+		public Connection connection(){
+			return this._connection;
+		}
+
+		public StatementCache statements(){
+			return this._statements;
+		}
+
+		void close(){
+			this._statements.close();
+			try{
+				this._connection.close();
+			}catch (SQLException e){
+				// ignored.
+			}//end try
+		}
+	}
+
+	public ConnectionPool(String url, String user, String passwd, int minSize, int maxSize,
+			long idleTimeoutMillis, long borrowTimeoutMillis) throws SQLException {
+		if (minSize < 0 || maxSize < 1 || minSize > maxSize)
+			throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+		this._url = url;
+		this._user = user;
+		this._passwd = passwd;
+		this._minSize = minSize;
+		this._maxSize = maxSize;
+		this._idleTimeoutMillis = idleTimeoutMillis;
+		this._borrowTimeoutMillis = borrowTimeoutMillis;
+		this._permits = new Semaphore(maxSize, true);
+
+		// warm up: open the minimum number of connections before first use
+		for (int i = 0; i < minSize; ++i)
+			this._idle.push(new PooledConnection(open()));
+
+		this._evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "connection-pool-evictor");
+			t.setDaemon(true);
+			return t;
+		});
+		long period = Math.max(1000, idleTimeoutMillis / 2);
+		this._evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Method to borrow a connection, waiting up to the borrow timeout when
+	 * maxSize connections are already on loan.  Only connections idle for
+	 * longer than VALIDATION_IDLE_MILLIS are validated first.
+	 *
+	 * @return a connection that must be handed back with release
+	 * @throws java.sql.SQLException when no connection can be obtained
+	 */
+	public PooledConnection borrow() throws SQLException {
+		if (this._closed) throw new SQLException("Connection pool is closed");
+		try{
+			if (!this._permits.tryAcquire(this._borrowTimeoutMillis, TimeUnit.MILLISECONDS))
+				throw new SQLException("Timed out waiting for a database connection");
+		}catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted waiting for a database connection", e);
+		}//end try
+
+		try{
+			while (true){
+				PooledConnection pc;
+				synchronized (this._idle){
+					pc = this._idle.poll();
+				}
+				if (pc == null) return new PooledConnection(open());
+				if (System.currentTimeMillis() - pc._lastUsed <= VALIDATION_IDLE_MILLIS || isValid(pc)) return pc;
+				pc.close();
+			}//end while
+		}catch (SQLException e){
+			this._permits.release();
+			throw e;
+		}//end try
+	}//end borrow
+
+	/**
+	 * Method to hand a borrowed connection back to the pool.  Any open
+	 * transaction is rolled back; broken connections are closed instead of
+	 * being reused.
+	 *
+	 * @param pc the connection returned by borrow
+	 */
+	public void release(PooledConnection pc){
+		if (pc == null) return;
+		boolean reusable = !this._closed;
+		try{
+			if (pc.connection().isClosed()){
+				reusable = false;
+			}else if (!pc.connection().getAutoCommit()){
+				pc.connection().rollback();
+				pc.connection().setAutoCommit(true);
+			}//end if
+		}catch (SQLException e){
+			reusable = false;
+		}//end try
+
+		if (reusable){
+			pc._lastUsed = System.currentTimeMillis();
+			synchronized (this._idle){
+				this._idle.push(pc);
+			}
+		}else{
+			pc.close();
+		}//end if
+		this._permits.release();
+	}//end release
+
+	/**
+	 * Method to return the number of idle connections.
+	 */
+	public int idleCount(){
+		synchronized (this._idle){
+			return this._idle.size();
+		}
+	}
+
+	/**
+	 * Method to return the largest number of connections the pool will open.
+	 */
+	public int maxSize(){
+		return this._maxSize;
+	}
+
+	/**
+	 * Method to close every idle connection and stop handing out new ones.
+	 * Connections still on loan are closed when they are released.
+	 */
+	public void close(){
+		this._closed = true;
+		this._evictor.shutdownNow();
+		synchronized (this._idle){
+			for (PooledConnection pc : this._idle)
+				pc.close();
+			this._idle.clear();
+		}
+	}//end close
+
+	/*
+	 * closes connections that have been idle for longer than the idle timeout,
+	 * keeping at least minSize of them open.
+	 */
+	private void evictIdle(){
+		long cutoff = System.currentTimeMillis() - this._idleTimeoutMillis;
+		synchronized (this._idle){
+			// the deque is ordered newest first, so the stale ones are at the tail
+			Iterator<PooledConnection> it = this._idle.descendingIterator();
+			while (it.hasNext() && this._idle.size() > this._minSize){
+				PooledConnection pc = it.next();
+				if (pc._lastUsed > cutoff) break;
+				it.remove();
+				pc.close();
+			}//end while
+		}
+	}
+
+	private Connection open() throws SQLException {
+		return DriverManager.getConnection(this._url, this._user, this._passwd);
+	}
+
+	private static boolean isValid(PooledConnection pc){
+		try{
+			return pc.connection().isValid(VALIDATION_TIMEOUT);
+		}catch (SQLException e){
+			return false;
+		}//end try
+	}
+}
@@ -0,0 +1,134 @@
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class keeps the results of recent customer lookups by last name, so a
+ * returning customer is found without a round trip.  At most capacity last
+ * names are kept, the least recently used one is evicted first, and an entry
+ * older than ttlMillis is reloaded.  MechanicShop invalidates a last name
+ * when it inserts a customer with it, and everything when customers are
+ * updated or loaded in bulk.  Changes made by other clients are seen once
+ * the entry expires.
+ *
+ */
+
+public class CustomerCache{
+	/**
+	 * The first page of a lookup and the total number of matching rows.
+	 */
+	public static class Page{
+		public final List<String> header;
+		public final List<List<String>> rows;
+		public final long total;
+
+		Page(List<String> header, List<List<String>> rows, long total){
+			this.header = Collections.unmodifiableList(header);
+			this.rows = Collections.unmodifiableList(rows);
+			this.total = total;
+		}
+	}
+
+	private static class Entry{
+		final Page page;
+		final long loadedAt;
+
+		Entry(Page page, long loadedAt){
+			this.page = page;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+	private final long _ttlNanos;
+	private final LinkedHashMap<String, Entry> _entries;
+	//bumped by every invalidation, so a lookup that raced with one is not cached
+	private long _generation = 0;
+	private long _hits = 0;
+	private long _misses = 0;
+	private long _evictions = 0;
+
+	public CustomerCache(final int capacity, long ttlMillis){
+		this._ttlNanos = ttlMillis * 1000000L;
+		// access-ordered so the eldest entry is the least recently used one
+		this._entries = new LinkedHashMap<String, Entry>(16, 0.75f, true){
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest){
+				if (size() <= capacity) return false;
+				++CustomerCache.this._evictions;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Method to return the cached page for a last name, or null when it is
+	 * not cached or has expired.  Counts a hit or a miss.
+	 */
+	public synchronized Page get(String lname){
+		Entry e = this._entries.get(lname);
+		if (e != null && System.nanoTime() - e.loadedAt > this._ttlNanos){
+			this._entries.remove(lname);
+			e = null;
+		}//end if
+		if (e == null){
+			++this._misses;
+			return null;
+		}//end if
+		++this._hits;
+		return e.page;
+	}
+
+	/**
+	 * Method to return the generation to pass to put for a lookup about to
+	 * be made.
+	 */
+	public synchronized long generation(){
+		return this._generation;
+	}
+
+	/**
+	 * Method to cache a page loaded from the database, unless the cache was
+	 * invalidated since generation was read.
+	 */
+	public synchronized void put(String lname, Page page, long generation){
+		if (generation != this._generation) return;
+		this._entries.put(lname, new Entry(page, System.nanoTime()));
+	}
+
+	public synchronized void invalidate(String lname){
+		++this._generation;
+		this._entries.remove(lname);
+	}
+
+	public synchronized void invalidateAll(){
+		++this._generation;
+		this._entries.clear();
+	}
+
+	public synchronized long hits(){
+		return this._hits;
+	}
+
+	public synchronized long misses(){
+		return this._misses;
+	}
+
+	/**
+	 * Method to write the hit, miss and eviction counters in the Prometheus
+	 * text format.
+	 */
+	public synchronized void writeMetrics(PrintStream out){
+		out.println("# HELP mechanicshop_customer_cache_requests_total Customer lookups by last name, by result.");
+		out.println("# TYPE mechanicshop_customer_cache_requests_total counter");
+		out.println("mechanicshop_customer_cache_requests_total{result=\"hit\"} " + this._hits);
+		out.println("mechanicshop_customer_cache_requests_total{result=\"miss\"} " + this._misses);
+		out.println("# HELP mechanicshop_customer_cache_evictions_total Last names evicted to stay within capacity.");
+		out.println("# TYPE mechanicshop_customer_cache_evictions_total counter");
+		out.println("mechanicshop_customer_cache_evictions_total " + this._evictions);
+		out.println("# HELP mechanicshop_customer_cache_entries Last names currently cached.");
+		out.println("# TYPE mechanicshop_customer_cache_entries gauge");
+		out.println("mechanicshop_customer_cache_entries " + this._entries.size());
+		out.flush();
+	}
+}
@@ -0,0 +1,393 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class writes a synthetic, referentially consistent copy of the
+ * phase3 data set at a chosen scale factor.  Scale factor 1 has the sizes of
+ * phase3/code/data (500 customers, 5000 cars, 30000 service requests); the
+ * files keep the same columns and formats, and the names, makes, models,
+ * complaints and comments are drawn from the seed files in that directory.
+ *
+ * Car ownership and service visits follow power laws, so as in the seed
+ * data a few percent of customers own more than 20 cars and a few cars
+ * account for many requests.  Every value of a row is a pure function of
+ * the seed and the row number, so the tables are generated in parallel
+ * chunks and still agree with each other.
+ *
+ */
+
+public class DataGenerator{
+	//rows per parallel chunk
+	static final int CHUNK_ROWS = 250000;
+	//sizes at scale factor 1, as in phase3/code/data
+	static final int CUSTOMERS = 500;
+	static final int MECHANICS = 250;
+	static final int CARS = 5000;
+	static final int REQUESTS = 30000;
+	//share of requests made by the owner of the car, as in the seed data
+	static final double OWNER_VISITS = 0.9;
+	//share of requests that have been closed
+	static final double CLOSED = 0.95;
+	//power law exponents; higher is more skewed
+	static final double OWNERSHIP_SKEW = 1.5;
+	static final double VISIT_SKEW = 1.3;
+	//service requests fall in 2016, as in the seed data
+	static final int FIRST_DAY = ColumnarResult.daysFromCivil(2016, 1, 1);
+	static final int DAYS = 366;
+
+	private final long _seed;
+	private final long _customers;
+	private final long _mechanics;
+	private final long _cars;
+	private final long _requests;
+	//multipliers of the owner and car permutations
+	private final long _ownerMultiplier;
+	private final long _carMultiplier;
+
+	//seed vocabularies
+	private final String[] _fnames;
+	private final String[] _lnames;
+	private final String[] _streets;
+	private final String[] _makes;
+	private final String[] _models;
+	private final String[] _complaints;
+	private final String[] _comments;
+
+	public DataGenerator(File seedDir, double scale, long seed) throws IOException {
+		if (scale <= 0) throw new IllegalArgumentException("Invalid scale factor: " + scale);
+		this._seed = seed;
+		this._customers = Math.max(1, Math.round(CUSTOMERS * scale));
+		// the mechanic staff grows much more slowly than the customer base
+		this._mechanics = Math.max(1, Math.round(MECHANICS * Math.sqrt(scale)));
+		this._cars = Math.max(1, Math.round(CARS * scale));
+		this._requests = Math.max(1, Math.round(REQUESTS * scale));
+		if (this._requests > Integer.MAX_VALUE || this._cars > 9999999999L)
+			throw new IllegalArgumentException("Scale factor too large: " + scale);
+		this._ownerMultiplier = multiplier(this._customers);
+		this._carMultiplier = multiplier(this._cars);
+
+		this._fnames = column(new File(seedDir, "customer.csv"), 1);
+		this._lnames = column(new File(seedDir, "customer.csv"), 2);
+		this._streets = addressTails(new File(seedDir, "customer.csv"));
+		this._makes = column(new File(seedDir, "car.csv"), 1);
+		this._models = column(new File(seedDir, "car.csv"), 2);
+		this._complaints = column(new File(seedDir, "service_request.csv"), 5);
+		this._comments = column(new File(seedDir, "closed_request.csv"), 4);
+	}
+
+	/*
+	 * formats row i of an output table into sb.
+	 */
+	private interface RowWriter{
+		void write(StringBuilder sb, long i);
+	}
+
+	/**
+	 * Method to write every table into a directory, generating chunks of
+	 * each table on all threads.
+	 *
+	 * @param outDir the directory the CSV files are written to
+	 * @param threads the number of worker threads
+	 * @throws java.io.IOException when a file cannot be written
+	 */
+	public void generate(File outDir, int threads) throws Exception {
+		if (!outDir.isDirectory() && !outDir.mkdirs()) throw new IOException("Cannot create " + outDir);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try{
+			List<String> names = new ArrayList<String>();
+			List<List<Future<File>>> parts = new ArrayList<List<Future<File>>>();
+			submit(pool, outDir, "customer.csv", this._customers, this::customer, names, parts);
+			submit(pool, outDir, "mechanic.csv", this._mechanics, this::mechanic, names, parts);
+			submit(pool, outDir, "car.csv", this._cars, this::car, names, parts);
+			submit(pool, outDir, "owns.csv", this._cars, this::owns, names, parts);
+			submit(pool, outDir, "service_request.csv", this._requests, this::serviceRequest, names, parts);
+			submit(pool, outDir, "closed_request.csv", this._requests, this::closedRequest, names, parts);
+
+			for (int t = 0; t < names.size(); ++t){
+				long start = System.nanoTime();
+				File target = new File(outDir, names.get(t));
+				concatenate(parts.get(t), target);
+				System.out.println(String.format("%s: %.1f MB, %.2f s after its chunks finished",
+					names.get(t), target.length() / 1048576.0, (System.nanoTime() - start) / 1e9));
+			}//end for
+		}finally{
+			pool.shutdownNow();
+		}
+	}//end generate
+
+	private static void submit(ExecutorService pool, File outDir, String name, long rows, RowWriter writer,
+			List<String> names, List<List<Future<File>>> parts){
+		List<Future<File>> chunks = new ArrayList<Future<File>>();
+		for (long from = 0; from < rows; from += CHUNK_ROWS){
+			final long lo = from;
+			final long hi = Math.min(rows, from + CHUNK_ROWS);
+			final File part = new File(outDir, name + ".part" + (from / CHUNK_ROWS));
+			chunks.add(pool.submit(() -> {
+				StringBuilder sb = new StringBuilder(256);
+				Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(part), StandardCharsets.UTF_8), 1 << 16);
+				try{
+					for (long i = lo; i < hi; ++i){
+						sb.setLength(0);
+						writer.write(sb, i);
+						if (sb.length() > 0) out.append(sb);
+					}//end for
+				}finally{
+					out.close();
+				}
+				return part;
+			}));
+		}//end for
+		names.add(name);
+		parts.add(chunks);
+	}
+
+	/*
+	 * joins the chunk files of a table, in order, into the table file.
+	 */
+	private static void concatenate(List<Future<File>> chunks, File target) throws Exception {
+		FileChannel out = new FileOutputStream(target).getChannel();
+		try{
+			for (Future<File> chunk : chunks){
+				File part = chunk.get();
+				FileChannel in = new FileInputStream(part).getChannel();
+				try{
+					long pos = 0, size = in.size();
+					while (pos < size)
+						pos += in.transferTo(pos, size - pos, out);
+				}finally{
+					in.close();
+				}
+				if (!part.delete()) throw new IOException("Cannot delete " + part);
+			}//end for
+		}finally{
+			out.close();
+		}
+	}
+
+	private void customer(StringBuilder sb, long i){
+		sb.append(i).append(',')
+			.append(pick(this._fnames, i, 1)).append(',')
+			.append(pick(this._lnames, i, 2)).append(',')
+			.append('(').append(200 + rand(i, 3, 800)).append(')')
+			.append(100 + rand(i, 4, 900)).append('-');
+		pad(sb, rand(i, 5, 10000), 4);
+		sb.append(',').append(1 + rand(i, 6, 9999)).append(' ').append(pick(this._streets, i, 7)).append('\n');
+	}
+
+	private void mechanic(StringBuilder sb, long i){
+		sb.append(i).append(',')
+			.append(pick(this._fnames, i, 11)).append(',')
+			.append(pick(this._lnames, i, 12)).append(',')
+			.append(rand(i, 13, 11)).append('\n');
+	}
+
+	private void car(StringBuilder sb, long i){
+		vin(sb, i);
+		sb.append(',').append(pick(this._makes, i, 21))
+			.append(',').append(pick(this._models, i, 22))
+			.append(',').append(1990 + rand(i, 23, 29)).append('\n');
+	}
+
+	private void owns(StringBuilder sb, long i){
+		sb.append(i).append(',').append(owner(i)).append(',');
+		vin(sb, i);
+		sb.append('\n');
+	}
+
+	private void serviceRequest(StringBuilder sb, long i){
+		long car = visitedCar(i);
+		long customer = unit(i, 31) < OWNER_VISITS ? owner(car) : rand(i, 32, this._customers);
+		sb.append(i).append(',').append(customer).append(',');
+		vin(sb, car);
+		sb.append(',');
+		date(sb, requestDay(i));
+		sb.append(',').append(27000 + rand(i, 34, 203000))
+			.append(',').append(pick(this._complaints, i, 35)).append('\n');
+	}
+
+	private void closedRequest(StringBuilder sb, long i){
+		if (unit(i, 41) >= CLOSED) return;
+		// one closed request per closed service request, so wid = rid stays unique
+		sb.append(i).append(',').append(i).append(',').append(rand(i, 42, this._mechanics)).append(',');
+		date(sb, requestDay(i) + (int) rand(i, 43, 60));
+		sb.append(',').append(pick(this._comments, i, 44))
+			.append(',').append(50 + rand(i, 45, 951)).append('\n');
+	}
+
+	private int requestDay(long i){
+		return FIRST_DAY + (int) rand(i, 33, DAYS);
+	}
+
+	/*
+	 * the owner of car i; low customer numbers own more cars, and the
+	 * heavy owners are spread over the id range by a fixed permutation.
+	 */
+	private long owner(long car){
+		long rank = (long) (this._customers * Math.pow(unit(car, 51), OWNERSHIP_SKEW));
+		return permute(Math.min(rank, this._customers - 1), this._ownerMultiplier, this._customers);
+	}
+
+	/*
+	 * the car serviced by request i, skewed towards frequently serviced cars.
+	 */
+	private long visitedCar(long i){
+		long rank = (long) (this._cars * Math.pow(unit(i, 52), VISIT_SKEW));
+		return permute(Math.min(rank, this._cars - 1), this._carMultiplier, this._cars);
+	}
+
+	/*
+	 * a VIN unique to car i: six letters and ten digits, the digits being a
+	 * bijection of i modulo 10^10.
+	 */
+	private void vin(StringBuilder sb, long i){
+		long h = mix(this._seed ^ (i * 0x9E3779B97F4A7C15L) ^ 61);
+		for (int k = 0; k < 6; ++k){
+			sb.append((char) ('A' + (int) Long.remainderUnsigned(h, 26)));
+			h = Long.divideUnsigned(h, 26);
+		}//end for
+		pad(sb, (i * 7817L + 1234567L) % 10000000000L, 10);
+	}
+
+	/*
+	 * writes a day number as M/D/YYYY 00:00, the format of the seed data.
+	 */
+	static void date(StringBuilder sb, int epochDay){
+		// civil-from-days, the inverse of ColumnarResult.daysFromCivil
+		int z = epochDay + 719468;
+		int era = (z >= 0 ? z : z - 146096) / 146097;
+		int doe = z - era * 146097;
+		int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		int mp = (5 * doy + 2) / 153;
+		int d = doy - (153 * mp + 2) / 5 + 1;
+		int m = mp < 10 ? mp + 3 : mp - 9;
+		int y = yoe + era * 400 + (m <= 2 ? 1 : 0);
+		sb.append(m).append('/').append(d).append('/').append(y).append(" 00:00");
+	}
+
+	private static void pad(StringBuilder sb, long v, int width){
+		String s = Long.toString(v);
+		for (int k = s.length(); k < width; ++k)
+			sb.append('0');
+		sb.append(s);
+	}
+
+	private String pick(String[] values, long i, int field){
+		return values[(int) rand(i, field, values.length)];
+	}
+
+	/*
+	 * a uniform value in [0, bound) for one field of row i.
+	 */
+	private long rand(long i, int field, long bound){
+		return Long.remainderUnsigned(mix(this._seed ^ (i * 0x9E3779B97F4A7C15L) ^ ((long) field << 48)), bound);
+	}
+
+	/*
+	 * a uniform value in [0, 1) for one field of row i.
+	 */
+	private double unit(long i, int field){
+		return (mix(this._seed ^ (i * 0x9E3779B97F4A7C15L) ^ ((long) field << 48)) >>> 11) * 0x1.0p-53;
+	}
+
+	/*
+	 * a fixed permutation of [0, n): x times a multiplier coprime to n, plus
+	 * an offset, modulo n.  The multiplier is below 2^16, so with n below
+	 * 10^10 the product does not overflow.
+	 */
+	private static long permute(long x, long a, long n){
+		return (a * x + 17) % n;
+	}
+
+	private static long multiplier(long n){
+		long a = 40503 % n;
+		while (gcd(a, n) != 1)
+			++a;
+		return a;
+	}
+
+	private static long gcd(long a, long b){
+		while (b != 0){
+			long t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+
+	/*
+	 * the splitmix64 finalizer.
+	 */
+	private static long mix(long z){
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/*
+	 * the distinct values of one column of a seed file.
+	 */
+	private static String[] column(File file, int col) throws IOException {
+		LinkedHashSet<String> values = new LinkedHashSet<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try{
+			String line;
+			while ((line = reader.readLine()) != null){
+				String[] f = line.split(",", -1);
+				if (f.length > col && !f[col].isEmpty()) values.add(f[col]);
+			}//end while
+		}finally{
+			reader.close();
+		}
+		if (values.isEmpty()) throw new IOException("No values in column " + col + " of " + file);
+		return values.toArray(new String[values.size()]);
+	}
+
+	/*
+	 * the customer addresses of a seed file without their house numbers.
+	 */
+	private static String[] addressTails(File file) throws IOException {
+		String[] addresses = column(file, 4);
+		LinkedHashSet<String> tails = new LinkedHashSet<String>();
+		for (String a : addresses){
+			int space = a.indexOf(' ');
+			tails.add(space > 0 ? a.substring(space + 1) : a);
+		}
+		return tails.toArray(new String[tails.size()]);
+	}
+
+	/**
+	 * The main execution method
+	 *
+	 * @param args &lt;seed dir&gt; &lt;out dir&gt; &lt;scale factor&gt; [threads] [seed]
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3){
+			System.err.println("Usage: java [-classpath <classpath>] " + DataGenerator.class.getName() +
+				" <seed dir> <out dir> <scale factor> [threads] [seed]");
+			return;
+		}//end if
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : 166L;
+		long start = System.nanoTime();
+		DataGenerator gen = new DataGenerator(new File(args[0]), Double.parseDouble(args[2]), seed);
+		gen.generate(new File(args[1]), threads);
+		System.out.println(String.format("Generated %d customers, %d mechanics, %d cars, %d requests in %.2f s",
+			gen._customers, gen._mechanics, gen._cars, gen._requests, (System.nanoTime() - start) / 1e9));
+	}//end main
+}
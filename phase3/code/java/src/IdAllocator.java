@@ -0,0 +1,77 @@
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+
+/**
+ * This class hands out primary key values from the id sequences created in
+ * sql/create.sql.  Every sequence is declared INCREMENT BY BLOCK_SIZE, so
+ * one nextval reserves BLOCK_SIZE consecutive ids for this process and the
+ * next BLOCK_SIZE - 1 ids are assigned without a round trip.  Ids left in a
+ * block when the program exits are skipped, not reused.
+ *
+ */
+
+public class IdAllocator{
+	//ids reserved per nextval, must match INCREMENT BY in sql/create.sql
+	static final int BLOCK_SIZE = 100;
+
+	private final ConnectionPool _pool;
+	private final HashMap<String, Block> _blocks = new HashMap<String, Block>();
+
+	//the ids [next, limit) reserved from one sequence
+	private static class Block{
+		long next = 0;
+		long limit = 0;
+	}
+
+	public IdAllocator(ConnectionPool pool){
+		this._pool = pool;
+	}
+
+	/**
+	 * Method to return the next id from a sequence, reserving a new block
+	 * from the server when the current one is used up.
+	 *
+	 * @param sequence name of the DB sequence
+	 * @return an id no other caller will receive
+	 * @throws java.sql.SQLException when a new block cannot be reserved
+	 */
+	public int next(String sequence) throws SQLException {
+		Block block;
+		synchronized (this._blocks){
+			block = this._blocks.get(sequence);
+			if (block == null){
+				block = new Block();
+				this._blocks.put(sequence, block);
+			}//end if
+		}
+		synchronized (block){
+			if (block.next == block.limit){
+				block.next = reserve(sequence);
+				block.limit = block.next + BLOCK_SIZE;
+			}//end if
+			return Math.toIntExact(block.next++);
+		}
+	}//end next
+
+	/*
+	 * reserves a block on the server and returns its first id.
+	 */
+	private long reserve(String sequence) throws SQLException {
+		ConnectionPool.PooledConnection pc = this._pool.borrow();
+		try{
+			PreparedStatement stmt = pc.statements().prepare("SELECT nextval(?::regclass)");
+			stmt.setString(1, sequence);
+			ResultSet rs = stmt.executeQuery();
+			try{
+				rs.next();
+				return rs.getLong(1);
+			}finally{
+				rs.close();
+			}
+		}finally{
+			this._pool.release(pc);
+		}
+	}
+}
@@ -0,0 +1,231 @@
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class pages through a sorted query with keyset (seek) pagination.
+ * The query is ordered by a unique key, usually the sort columns followed by
+ * the primary key, and each page after the first starts with a predicate
+ * that seeks past the key of the last row already seen.  Unlike OFFSET, no
+ * page makes the server read and discard the rows of the pages before it, so
+ * with an index on the key every page costs about the same however deep it
+ * is.
+ *
+ * When every key column sorts the same way the seek is a row comparison,
+ * (k1, k2) &gt; (?, ?); otherwise it is expanded into the equivalent OR
+ * chain, led by a range on the first key that an index can use.
+ *
+ * A pager keeps its position, so it is used by one listing at a time.
+ *
+ */
+
+public class KeysetPager{
+	/**
+	 * A column of the sort key.
+	 */
+	public static class Key{
+		public final String expr;
+		public final boolean descending;
+
+		public Key(String expr, boolean descending){
+			this.expr = expr;
+			this.descending = descending;
+		}
+	}
+
+	public static Key asc(String expr){
+		return new Key(expr, false);
+	}
+
+	public static Key desc(String expr){
+		return new Key(expr, true);
+	}
+
+	private final Key[] _keys;
+	private final String _firstPageSql;
+	private final String _nextPageSql;
+	//the key index bound to each placeholder of _nextPageSql
+	private final int[] _seekParams;
+
+	//values bound to the placeholders of the WHERE condition
+	private Object[] _whereParams = new Object[0];
+	//key values of the last row returned, null before the first page
+	private Object[] _last = null;
+	private boolean _done = false;
+
+	/**
+	 * @param select the select list shown to the user, e.g. "C.fname, C.lname"
+	 * @param from the FROM clause without the keyword
+	 * @param where the WHERE condition without the keyword, or null; it may
+	 * have ? placeholders, see bind
+	 * @param keys the sort key; together the columns must be unique
+	 */
+	public KeysetPager(String select, String from, String where, Key... keys){
+		if (keys.length == 0) throw new IllegalArgumentException("A keyset pager needs a sort key");
+		this._keys = keys;
+
+		StringBuilder orderBy = new StringBuilder();
+		StringBuilder keyColumns = new StringBuilder();
+		boolean uniform = true;
+		for (int i = 0; i < keys.length; ++i){
+			if (i > 0) orderBy.append(", ");
+			orderBy.append(keys[i].expr).append(keys[i].descending ? " DESC" : "");
+			keyColumns.append(", ").append(keys[i].expr);
+			uniform &= keys[i].descending == keys[0].descending;
+		}//end for
+		String head = "SELECT " + select + keyColumns + " FROM " + from;
+		String tail = " ORDER BY " + orderBy + " LIMIT ?";
+
+		List<Integer> params = new ArrayList<Integer>();
+		String seek = uniform ? rowSeek(params) : chainSeek(params);
+		this._seekParams = new int[params.size()];
+		for (int i = 0; i < this._seekParams.length; ++i)
+			this._seekParams[i] = params.get(i);
+
+		this._firstPageSql = head + (where == null ? "" : " WHERE " + where) + tail;
+		this._nextPageSql = head + " WHERE " + (where == null ? "" : "(" + where + ") AND ") + seek + tail;
+	}
+
+	/*
+	 * (k1, k2, ...) > (?, ?, ...), or < when the keys are descending.
+	 */
+	private String rowSeek(List<Integer> params){
+		StringBuilder cols = new StringBuilder("(");
+		StringBuilder marks = new StringBuilder("(");
+		for (int i = 0; i < this._keys.length; ++i){
+			if (i > 0){
+				cols.append(", ");
+				marks.append(", ");
+			}//end if
+			cols.append(this._keys[i].expr);
+			marks.append('?');
+			params.add(i);
+		}//end for
+		return cols + ")" + (this._keys[0].descending ? " < " : " > ") + marks + ")";
+	}
+
+	/*
+	 * k1 >= ? AND (k1 > ? OR (k1 = ? AND (k2 > ? OR ...))), with the
+	 * comparisons flipped for descending keys.
+	 */
+	private String chainSeek(List<Integer> params){
+		Key first = this._keys[0];
+		params.add(0);
+		StringBuilder sb = new StringBuilder(first.expr).append(first.descending ? " <= ?" : " >= ?").append(" AND ");
+		int open = 0;
+		for (int i = 0; i < this._keys.length; ++i){
+			Key k = this._keys[i];
+			sb.append('(').append(k.expr).append(k.descending ? " < ?" : " > ?");
+			params.add(i);
+			++open;
+			if (i + 1 < this._keys.length){
+				sb.append(" OR (").append(k.expr).append(" = ? AND ");
+				params.add(i);
+				++open;
+			}//end if
+		}//end for
+		for (int i = 0; i < open; ++i)
+			sb.append(')');
+		return sb.toString();
+	}
+
+	/**
+	 * Method to set the values of the placeholders of the WHERE condition.
+	 *
+	 * @return this pager
+	 */
+	public KeysetPager bind(Object... params){
+		this._whereParams = params;
+		return this;
+	}
+
+	/**
+	 * Method to start after a known key instead of at the first row, e.g.
+	 * after a first page fetched some other way.
+	 *
+	 * @param key the values of the sort key columns of the last row seen
+	 * @return this pager
+	 */
+	public KeysetPager after(Object... key){
+		if (key.length != this._keys.length) throw new IllegalArgumentException("Expected " + this._keys.length + " key values");
+		this._last = key;
+		this._done = false;
+		return this;
+	}
+
+	/**
+	 * Method to return true once a page has come back short, so there are
+	 * no more rows.
+	 */
+	public boolean isDone(){
+		return this._done;
+	}
+
+	/**
+	 * Method to start over from the first page.
+	 */
+	public void reset(){
+		this._last = null;
+		this._done = false;
+	}
+
+	/**
+	 * Method to return the SQL of the next page, for tests and EXPLAIN.
+	 */
+	public String sql(){
+		return this._last == null ? this._firstPageSql : this._nextPageSql;
+	}
+
+	/**
+	 * Method to fetch the next page and move past it.
+	 *
+	 * @param statements the statement cache of the connection to query on
+	 * @param pageSize the largest number of rows to return
+	 * @param header filled with the names of the shown columns when not null
+	 * @return the shown columns of the rows of the page, empty once done
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public List<List<String>> next(StatementCache statements, int pageSize, List<String> header) throws SQLException {
+		List<List<String>> rows = new ArrayList<List<String>>();
+		if (this._done) return rows;
+		PreparedStatement stmt = statements.prepare(sql());
+		stmt.clearParameters();
+		int p = 1;
+		for (Object param : this._whereParams)
+			stmt.setObject(p++, param);
+		if (this._last != null){
+			for (int k : this._seekParams)
+				stmt.setObject(p++, this._last[k]);
+		}//end if
+		// one row more than the page tells whether another page follows
+		stmt.setInt(p, pageSize + 1);
+		ResultSet rs = stmt.executeQuery();
+		try{
+			ResultSetMetaData rsmd = rs.getMetaData();
+			int numCol = rsmd.getColumnCount() - this._keys.length;
+			if (header != null){
+				header.clear();
+				for (int i = 1; i <= numCol; ++i)
+					header.add(rsmd.getColumnName(i));
+			}//end if
+			Object[] last = null;
+			while (rows.size() < pageSize && rs.next()){
+				List<String> record = new ArrayList<String>(numCol);
+				for (int i = 1; i <= numCol; ++i)
+					record.add(rs.getString(i));
+				rows.add(record);
+				last = new Object[this._keys.length];
+				for (int k = 0; k < this._keys.length; ++k)
+					last[k] = rs.getObject(numCol + 1 + k);
+			}//end while
+			this._done = !rs.next();
+			if (last != null) this._last = last;
+		}finally{
+			rs.close();
+		}
+		return rows;
+	}//end next
+}
@@ -0,0 +1,187 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class keeps the Mechanic table in memory so mechanic ids can be
+ * validated without a round trip.  Mechanics are held in parallel arrays and
+ * indexed by id in an open-addressing hash table of primitive ints, so a
+ * lookup does not box the id.  Readers see an immutable snapshot; loading
+ * and adding a mechanic replace the snapshot.  Ids found missing after a
+ * reload are remembered with the snapshot, so a mistyped id does not cost
+ * another reload until the directory changes.
+ *
+ */
+
+public class MechanicDirectory{
+	static final String SELECT_MECHANICS = "SELECT id, fname, lname, experience FROM Mechanic";
+	//slot value of an empty slot of the hash table
+	static final int EMPTY = -1;
+
+	/*
+	 * the mechanics at one point in time.
+	 */
+	private static class Snapshot{
+		final int[] ids;
+		final String[] fnames;
+		final String[] lnames;
+		final int[] experience;
+		final int size;
+		//row index per slot, EMPTY when the slot is free
+		final int[] slots;
+		final int mask;
+		//ids confirmed missing from this snapshot by a reload
+		final Set<Integer> missing = ConcurrentHashMap.newKeySet();
+
+		Snapshot(int[] ids, String[] fnames, String[] lnames, int[] experience, int size){
+			this.ids = ids;
+			this.fnames = fnames;
+			this.lnames = lnames;
+			this.experience = experience;
+			this.size = size;
+			// at most half full, so probe sequences stay short
+			int capacity = Integer.highestOneBit(Math.max(4, size * 2 - 1)) << 1;
+			this.slots = new int[capacity];
+			this.mask = capacity - 1;
+			Arrays.fill(this.slots, EMPTY);
+			for (int row = 0; row < size; ++row){
+				int slot = find(ids[row]);
+				// a duplicate id keeps its last row
+				this.slots[slot] = row;
+			}//end for
+		}
+
+		/*
+		 * the slot holding id, or the empty slot where it would go.
+		 */
+		int find(int id){
+			int slot = mix(id) & this.mask;
+			while (this.slots[slot] != EMPTY && this.ids[this.slots[slot]] != id)
+				slot = (slot + 1) & this.mask;
+			return slot;
+		}
+
+		int row(int id){
+			return this.slots[find(id)];
+		}
+	}
+
+	private volatile Snapshot _snapshot = null;
+
+	/**
+	 * Method to (re)load every mechanic from the database.
+	 *
+	 * @param connection the connection to read through
+	 * @return the number of mechanics loaded
+	 * @throws java.sql.SQLException when the table cannot be read
+	 */
+	public int load(Connection connection) throws SQLException {
+		int[] ids = new int[256];
+		String[] fnames = new String[256];
+		String[] lnames = new String[256];
+		int[] experience = new int[256];
+		int n = 0;
+		Statement stmt = connection.createStatement();
+		try{
+			ResultSet rs = stmt.executeQuery(SELECT_MECHANICS);
+			while (rs.next()){
+				if (n == ids.length){
+					ids = Arrays.copyOf(ids, n * 2);
+					fnames = Arrays.copyOf(fnames, n * 2);
+					lnames = Arrays.copyOf(lnames, n * 2);
+					experience = Arrays.copyOf(experience, n * 2);
+				}//end if
+				ids[n] = rs.getInt(1);
+				fnames[n] = rs.getString(2);
+				lnames[n] = rs.getString(3);
+				experience[n] = rs.getInt(4);
+				++n;
+			}//end while
+		}finally{
+			stmt.close();
+		}
+		synchronized (this){
+			this._snapshot = new Snapshot(ids, fnames, lnames, experience, n);
+		}
+		return n;
+	}//end load
+
+	/**
+	 * Method to add a mechanic that has been inserted into the database.
+	 * Nothing happens if the directory has not been loaded yet.
+	 */
+	public synchronized void add(int id, String fname, String lname, int experience){
+		Snapshot s = this._snapshot;
+		if (s == null) return;
+		int n = s.size;
+		this._snapshot = new Snapshot(append(s.ids, n, id), append(s.fnames, n, fname),
+			append(s.lnames, n, lname), append(s.experience, n, experience), n + 1);
+	}
+
+	/**
+	 * Method to drop the loaded mechanics, so the next user reloads them.
+	 */
+	public synchronized void invalidate(){
+		this._snapshot = null;
+	}
+
+	public boolean isLoaded(){
+		return this._snapshot != null;
+	}
+
+	/**
+	 * Method to check whether a mechanic id exists.  Always false while the
+	 * directory is not loaded.
+	 */
+	public boolean contains(int id){
+		Snapshot s = this._snapshot;
+		return s != null && s.row(id) != EMPTY;
+	}
+
+	/**
+	 * Method to check whether an id was already found missing after the
+	 * directory was last loaded.
+	 */
+	public boolean isKnownMissing(int id){
+		Snapshot s = this._snapshot;
+		return s != null && s.missing.contains(id);
+	}
+
+	/**
+	 * Method to remember that an id is missing, until the directory is
+	 * reloaded, added to or invalidated.
+	 */
+	public void markMissing(int id){
+		Snapshot s = this._snapshot;
+		if (s != null && s.row(id) == EMPTY) s.missing.add(id);
+	}
+
+	public int size(){
+		Snapshot s = this._snapshot;
+		return s == null ? 0 : s.size;
+	}
+
+	private static int[] append(int[] a, int n, int v){
+		int[] b = Arrays.copyOf(a, n + 1);
+		b[n] = v;
+		return b;
+	}
+
+	private static String[] append(String[] a, int n, String v){
+		String[] b = Arrays.copyOf(a, n + 1);
+		b[n] = v;
+		return b;
+	}
+
+	/*
+	 * spreads consecutive ids over the table.
+	 */
+	private static int mix(int id){
+		int h = id * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
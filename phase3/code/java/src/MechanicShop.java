@@ -11,18 +11,35 @@
  */
 
 
-import java.sql.DriverManager;
-import java.sql.Connection;
 import java.sql.Statement;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Date;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.io.FileReader;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.BufferedWriter;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * This class defines a simple embedded SQL utility class that is designed to
@@ -31,19 +48,144 @@ import java.util.ArrayList;
  */
 
 public class MechanicShop{
-	//reference to physical database connection
-	private Connection _connection = null;
+	//number of prepared statements kept per connection
+	static final int STATEMENT_CACHE_SIZE = 64;
+	//executions after which a statement is prepared on the server
+	static final int PREPARE_THRESHOLD = 3;
+	//connection pool sizing, overridable with -Dmechanicshop.pool.* properties
+	static final int POOL_MIN_SIZE = Integer.getInteger("mechanicshop.pool.min", 1);
+	static final int POOL_MAX_SIZE = Integer.getInteger("mechanicshop.pool.max", 8);
+	static final long POOL_IDLE_TIMEOUT = Long.getLong("mechanicshop.pool.idleTimeoutMillis", 300000L);
+	static final long POOL_BORROW_TIMEOUT = Long.getLong("mechanicshop.pool.borrowTimeoutMillis", 30000L);
+	//rows pulled per round trip when printing through a server-side cursor
+	static final int FETCH_SIZE = Integer.getInteger("mechanicshop.fetchSize", 1000);
+	//printed output is flushed after this many rows or this much time, whichever comes first
+	static final int FLUSH_ROWS = Integer.getInteger("mechanicshop.flushRows", 1000);
+	static final long FLUSH_INTERVAL_MILLIS = Long.getLong("mechanicshop.flushIntervalMillis", 200L);
+	//customers shown per last-name lookup at the front desk
+	static final int CUSTOMER_PAGE_SIZE = 20;
+	//last names kept by the customer lookup cache, and how long an entry is trusted
+	static final int CUSTOMER_CACHE_SIZE = Integer.getInteger("mechanicshop.customerCache.size", 1024);
+	static final long CUSTOMER_CACHE_TTL = Long.getLong("mechanicshop.customerCache.ttlMillis", 60000L);
+	//rows queued per statement before a batch is sent to the server
+	static final int BATCH_SIZE = Integer.getInteger("mechanicshop.batchSize", 500);
+	//script commands run per transaction
+	static final int SCRIPT_TRANSACTION_SIZE = Integer.getInteger("mechanicshop.scriptTransactionSize", 1000);
+	//file the metrics are also written to on exit, e.g. for a node_exporter textfile collector
+	static final String METRICS_FILE = System.getProperty("mechanicshop.metricsFile");
+	//the operation names database calls are tagged with, by menu choice
+	static final String[] OPERATIONS = {"menu", "AddCustomer", "AddMechanic", "AddCar", "InsertServiceRequest",
+		"CloseServiceRequest", "ListCustomersWithBillLessThan100", "ListCustomersWithMoreThan20Cars",
+		"ListCarsBefore1995With50000Milles", "ListKCarsWithTheMostServices", "ListCustomersInDescendingOrderOfTheirTotalBill",
+		"RunAllReports"};
+
+	//insert statements shared by the menu operations and the batch inserter
+	static final String INSERT_CUSTOMER = "INSERT INTO Customer (id, fname, lname, phone, address) Values (?, ?, ?, ?, ?)";
+	static final String INSERT_MECHANIC = "INSERT INTO Mechanic (id, fname, lname, experience) Values (?, ?, ?, ?)";
+	static final String INSERT_CAR = "INSERT INTO Car (vin, make, model, year) Values (?, ?, ?, ?)";
+	static final String INSERT_SERVICE_REQUEST = "INSERT INTO Service_Request (rid, customer_id, car_vin, date, odometer, complain) Values (?, ?, ?, ?, ?, ?)";
+	static final String FIND_CAR = "SELECT 1 FROM Car WHERE vin = ?";
+	static final String FIND_RELATION = "SELECT 1 WHERE to_regclass(?::text) IS NOT NULL";
+	//opens a service request in one statement, inserting the customer and car first when
+	//their flags are set and the ownership when the customer does not own the car yet; an
+	//ownership id of null is taken from owns_ownership_id_seq only if the row is inserted
+	static final String OPEN_SERVICE_REQUEST = "WITH new_customer AS (INSERT INTO Customer (id, fname, lname, phone, address) " +
+		"SELECT ?::integer, ?::text, ?::text, ?::text, ?::text WHERE ?::boolean), " +
+		"new_car AS (INSERT INTO Car (vin, make, model, year) SELECT ?::text, ?::text, ?::text, ?::integer WHERE ?::boolean), " +
+		"new_owns AS (INSERT INTO Owns (ownership_id, customer_id, car_vin) " +
+		"SELECT COALESCE(?::integer, nextval('owns_ownership_id_seq')::integer), ?::integer, ?::text " +
+		"WHERE NOT EXISTS (SELECT 1 FROM Owns O WHERE O.customer_id = ?::integer AND O.car_vin = ?::text)) " +
+		"INSERT INTO Service_Request (rid, customer_id, car_vin, date, odometer, complain) VALUES (?, ?, ?, ?, ?, ?)";
+	static final String SEARCH_CUSTOMER_BY_LNAME = "SELECT id, fname, lname, phone, address FROM Customer WHERE lname = ? ORDER BY id";
+	//statements other than INSERT_CUSTOMER that change customers
+	static final Pattern CUSTOMER_WRITE = Pattern.compile ("(?i)\\b(INSERT\\s+INTO|UPDATE|DELETE\\s+FROM|TRUNCATE(\\s+TABLE)?)\\s+Customer\\b");
+	static final String INSERT_CLOSED_REQUEST = "INSERT INTO Closed_Request (wid, rid, mid, date, comment, bill) Values (?, ?, ?, ?, ?, ?)";
+	//validates and closes a request on the server, see sql/migrations/004_close_request.sql
+	static final String CLOSE_REQUEST = "SELECT close_request(?::integer, ?::integer, ?::date, ?::text, ?::integer, ?::integer)";
+	//statements other than INSERT_MECHANIC that change mechanics
+	static final Pattern MECHANIC_WRITE = Pattern.compile ("(?i)\\b(INSERT\\s+INTO|UPDATE|DELETE\\s+FROM|TRUNCATE(\\s+TABLE)?)\\s+Mechanic\\b");
+
+	//id sequences, see sql/create.sql
+	static final String CUSTOMER_ID_SEQ = "customer_id_seq";
+	static final String MECHANIC_ID_SEQ = "mechanic_id_seq";
+	static final String OWNERSHIP_ID_SEQ = "owns_ownership_id_seq";
+	static final String RID_SEQ = "service_request_rid_seq";
+	static final String WID_SEQ = "closed_request_wid_seq";
+
+	//report queries behind menu options 6-10; 6 and 10 read the totals kept
+	//by the triggers in sql/migrations/002_customer_bill_totals.sql
+	static final String BILL_TOTALS = "customer_bill_totals";
+	static final String REPORT_BILL_LESS_THAN_100 = "SELECT C.fname, C.lname FROM Customer C, customer_bill_totals T WHERE C.id = T.customer_id AND T.closed_count > 0 AND T.total_bill < 100;";
+	static final String REPORT_MORE_THAN_20_CARS = "SELECT fname, lname FROM Customer C WHERE C.id IN (SELECT customer_id FROM Owns GROUP BY customer_id HAVING COUNT(*) > 20);";
+	static final String REPORT_CARS_BEFORE_1995 = "SELECT C1.make, C1.model, C1.year FROM Car C1 WHERE C1.vin IN ( SELECT C.vin FROM Car C,Service_Request S  WHERE C.vin = S.car_vin AND S.odometer < 50000  AND C.year < 1995);";
+	static final String REPORT_TOTAL_BILL_DESC = "SELECT C.fname, C.lname, T.total_bill FROM customer_bill_totals T, Customer C WHERE C.id = T.customer_id AND T.closed_count > 0 ORDER BY T.total_bill DESC, T.customer_id;";
+	//the same totals aggregated from the base tables, for 6 and 10 on a
+	//database where migration 002 has not run
+	static final String BASE_BILL_TOTALS = "(SELECT S.customer_id, SUM(CR.bill) AS total_bill FROM Service_Request S, Closed_Request CR WHERE S.rid = CR.rid GROUP BY S.customer_id) T";
+	static final String REPORT_BILL_LESS_THAN_100_BASE = "SELECT C.fname, C.lname FROM Customer C, " + BASE_BILL_TOTALS + " WHERE C.id = T.customer_id AND T.total_bill < 100;";
+	static final String REPORT_TOTAL_BILL_DESC_BASE = "SELECT C.fname, C.lname, T.total_bill FROM " + BASE_BILL_TOTALS + ", Customer C WHERE C.id = T.customer_id ORDER BY T.total_bill DESC, T.customer_id;";
+	//option 9 reads the counts kept by sql/migrations/003_car_service_counts.sql;
+	//ties are ordered by VIN in the "C" collation of the index from 006
+	static final String CAR_COUNTS = "car_service_counts";
+	static final String REPORT_ALL_CAR_COUNTS = "SELECT C.make, C.model, C.vin, T.service_count FROM car_service_counts T, Car C WHERE C.vin = T.car_vin;";
+	static final String REPORT_K_CARS = "SELECT C.make, C.model, C.vin, T.service_count FROM car_service_counts T, Car C WHERE C.vin = T.car_vin ORDER BY T.service_count DESC, T.car_vin COLLATE \"C\" LIMIT ?;";
+	static final String REPORT_TOP_10_CARS = "SELECT C.make, C.model, C.vin, T.service_count FROM car_service_counts T, Car C WHERE C.vin = T.car_vin ORDER BY T.service_count DESC, T.car_vin COLLATE \"C\" LIMIT 10;";
+	//the same counts aggregated from Service_Request, for 9 on a database
+	//where migration 003 has not run
+	static final String BASE_CAR_COUNTS = "(SELECT S.car_vin, COUNT(*) AS service_count FROM Service_Request S GROUP BY S.car_vin) T";
+	static final String REPORT_ALL_CAR_COUNTS_BASE = "SELECT C.make, C.model, C.vin, T.service_count FROM " + BASE_CAR_COUNTS + ", Car C WHERE C.vin = T.car_vin;";
+	static final String REPORT_K_CARS_BASE = "SELECT C.make, C.model, C.vin, T.service_count FROM " + BASE_CAR_COUNTS + ", Car C WHERE C.vin = T.car_vin ORDER BY T.service_count DESC, T.car_vin COLLATE \"C\" LIMIT ?;";
+	static final String REPORT_TOP_10_CARS_BASE = "SELECT C.make, C.model, C.vin, T.service_count FROM " + BASE_CAR_COUNTS + ", Car C WHERE C.vin = T.car_vin ORDER BY T.service_count DESC, T.car_vin COLLATE \"C\" LIMIT 10;";
+	//every service request with its closing, if any, for the export command
+	static final String REPORT_SERVICE_HISTORY = "SELECT S.rid, S.customer_id, S.car_vin, S.date, S.odometer, S.complain, W.wid, W.mid, W.date AS closed_date, W.comment, W.bill FROM Service_Request S LEFT JOIN Closed_Request W ON W.rid = S.rid ORDER BY S.rid;";
+	//rows per page of the paged report listings
+	static final int REPORT_PAGE_SIZE = Integer.getInteger("mechanicshop.reportPageSize", 50);
+	//largest K served by the index scan, larger ones go through a TopK heap
+	static final int TOP_K_INDEX_LIMIT = Integer.getInteger("mechanicshop.topKIndexLimit", 1000);
+	//menu label of every report, in menu order
+	static final LinkedHashMap<String, String> REPORTS = new LinkedHashMap<String, String>();
+	static{
+		REPORTS.put ("6. ListCustomersWithBillLessThan100", REPORT_BILL_LESS_THAN_100);
+		REPORTS.put ("7. ListCustomersWithMoreThan20Cars", REPORT_MORE_THAN_20_CARS);
+		REPORTS.put ("8. ListCarsBefore1995With50000Milles", REPORT_CARS_BEFORE_1995);
+		REPORTS.put ("9. ListKCarsWithTheMostServices (K=10)", REPORT_TOP_10_CARS);
+		REPORTS.put ("10. ListCustomersInDescendingOrderOfTheirTotalBill", REPORT_TOTAL_BILL_DESC);
+	}
+	//summary table read by a report query, and the base-table query run in
+	//its place while that table does not exist
+	static final Map<String, String[]> REPORT_FALLBACKS = new HashMap<String, String[]>();
+	static{
+		REPORT_FALLBACKS.put (REPORT_BILL_LESS_THAN_100, new String[] {BILL_TOTALS, REPORT_BILL_LESS_THAN_100_BASE});
+		REPORT_FALLBACKS.put (REPORT_TOTAL_BILL_DESC, new String[] {BILL_TOTALS, REPORT_TOTAL_BILL_DESC_BASE});
+		REPORT_FALLBACKS.put (REPORT_ALL_CAR_COUNTS, new String[] {CAR_COUNTS, REPORT_ALL_CAR_COUNTS_BASE});
+		REPORT_FALLBACKS.put (REPORT_K_CARS, new String[] {CAR_COUNTS, REPORT_K_CARS_BASE});
+		REPORT_FALLBACKS.put (REPORT_TOP_10_CARS, new String[] {CAR_COUNTS, REPORT_TOP_10_CARS_BASE});
+	}
+
+	//pool of physical database connections
+	private ConnectionPool _pool = null;
+	//hands out ids from blocks reserved on the id sequences
+	private IdAllocator _ids = null;
+	//latency, row and error counts of the data-access calls
+	private final Metrics _metrics = new Metrics ();
+	//recent customer lookups by last name
+	private final CustomerCache _customers = new CustomerCache (CUSTOMER_CACHE_SIZE, CUSTOMER_CACHE_TTL);
+	//the Mechanic table, loaded on first use
+	private final MechanicDirectory _mechanics = new MechanicDirectory ();
 	static BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
 	
 	public MechanicShop(String dbname, String dbport, String user, String passwd) throws SQLException {
 		System.out.print("Connecting to database...");
 		try{
 			// constructs the connection URL
-			String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
+			// batched inserts are rewritten into multi-row INSERTs by the driver
+			String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname + "?reWriteBatchedInserts=true";
 			System.out.println ("Connection URL: " + url + "\n");
 			
-			// obtain a physical connection
-	        this._connection = DriverManager.getConnection(url, user, passwd);
+			// open the connection pool and its initial physical connections
+	        this._pool = new ConnectionPool(url, user, passwd, POOL_MIN_SIZE, POOL_MAX_SIZE,
+	        		POOL_IDLE_TIMEOUT, POOL_BORROW_TIMEOUT);
+	        this._ids = new IdAllocator(this._pool);
 	        System.out.println("Done");
 		}catch(Exception e){
 			System.err.println("Error - Unable to Connect to Database: " + e.getMessage());
@@ -60,57 +202,146 @@ public class MechanicShop{
 	 * @throws java.sql.SQLException when update failed
 	 * */
 	public void executeUpdate (String sql) throws SQLException { 
-		// creates a statement object
-		Statement stmt = this._connection.createStatement ();
-
-		// issues the update instruction
-		stmt.executeUpdate (sql);
+		long start = System.nanoTime ();
+		ConnectionPool.PooledConnection pc = null;
+		try{
+			pc = this._pool.borrow ();
+			// creates a statement object
+			Statement stmt = pc.connection ().createStatement ();
+
+			// issues the update instruction
+			int rows = stmt.executeUpdate (sql);
+
+			// close the instruction
+		    stmt.close ();
+		    cachesChanged (sql, null);
+		    this._metrics.success ("executeUpdate", start, rows);
+		}catch (SQLException | RuntimeException e){
+			this._metrics.failure ("executeUpdate", start);
+			throw e;
+		}finally{
+			if (pc != null) this._pool.release (pc);
+		}
+	}//end executeUpdate
 
-		// close the instruction
-	    stmt.close ();
+	/**
+	 * Method to execute a parameterized update SQL statement.  The statement
+	 * is taken from the per-connection statement cache, so repeated calls with
+	 * the same SQL text reuse the parsed and planned statement.
+	 * 
+	 * @param sql the input SQL string with ? placeholders
+	 * @param params the values bound to the placeholders, in order
+	 * @return the number of rows affected
+	 * @throws java.sql.SQLException when update failed
+	 * */
+	public int executeUpdate (String sql, Object... params) throws SQLException { 
+		long start = System.nanoTime ();
+		ConnectionPool.PooledConnection pc = null;
+		try{
+			pc = this._pool.borrow ();
+			PreparedStatement stmt = pc.statements ().prepare (sql);
+			bind (stmt, params);
+			int rows = stmt.executeUpdate ();
+			cachesChanged (sql, params);
+			this._metrics.success ("executeUpdate", start, rows);
+			return rows;
+		}catch (SQLException | RuntimeException e){
+			this._metrics.failure ("executeUpdate", start);
+			throw e;
+		}finally{
+			if (pc != null) this._pool.release (pc);
+		}
 	}//end executeUpdate
 
+	/*
+	 * updates the customer cache and mechanic directory for the rows an
+	 * update may have changed.  Only autocommitted updates come through
+	 * here, so the changes are visible.
+	 */
+	private void cachesChanged (String sql, Object[] params){
+		if (sql.equals (INSERT_CUSTOMER) && params != null) this._customers.invalidate ((String) params[2]);
+		else if (CUSTOMER_WRITE.matcher (sql).find ()) this._customers.invalidateAll ();
+		if (sql.equals (INSERT_MECHANIC) && params != null)
+			this._mechanics.add (((Number) params[0]).intValue (), (String) params[1], (String) params[2], ((Number) params[3]).intValue ());
+		else if (MECHANIC_WRITE.matcher (sql).find ()) this._mechanics.invalidate ();
+	}
+
 	/**
 	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
 	 * method issues the query to the DBMS and outputs the results to
-	 * standard out.
+	 * standard out.  Rows are streamed through a server-side cursor FETCH_SIZE
+	 * at a time, so memory use does not grow with the size of the result.
 	 * 
 	 * @param query the input query string
 	 * @return the number of rows returned
 	 * @throws java.sql.SQLException when failed to execute the query
 	 */
 	public int executeQueryAndPrintResult (String query) throws SQLException {
-		//creates a statement object
-		Statement stmt = this._connection.createStatement ();
+		long start = System.nanoTime ();
+		ConnectionPool.PooledConnection pc = null;
+		try{
+			pc = this._pool.borrow ();
+			//the driver only uses a cursor inside a transaction
+			pc.connection ().setAutoCommit (false);
 
-		//issues the query instruction
-		ResultSet rs = stmt.executeQuery (query);
+			//creates a statement object
+			Statement stmt = pc.connection ().createStatement ();
+			int rowCount;
+			try{
+				stmt.setFetchSize (FETCH_SIZE);
+
+				//issues the query instruction
+				ResultSet rs = stmt.executeQuery (query);
+				rowCount = printResult (rs);
+			}finally{
+				// closing the statement closes its result set and cursor
+				stmt.close ();
+			}
+			pc.connection ().commit ();
+			this._metrics.success ("executeQueryAndPrintResult", start, rowCount);
+			return rowCount;
+		}catch (SQLException | RuntimeException e){
+			this._metrics.failure ("executeQueryAndPrintResult", start);
+			throw e;
+		}finally{
+			if (pc != null) this._pool.release (pc);
+		}
+	}
 
-		/*
-		 *  obtains the metadata object for the returned result set.  The metadata
-		 *  contains row and column info.
-		 */
-		ResultSetMetaData rsmd = rs.getMetaData ();
-		int numCol = rsmd.getColumnCount ();
-		int rowCount = 0;
-		
-		//iterates through the result set and output them to standard out.
-		boolean outputHeader = true;
-		while (rs.next()){
-			if(outputHeader){
-				for(int i = 1; i <= numCol; i++){
-					System.out.print(rsmd.getColumnName(i) + "\t");
-			    }
-			    System.out.println();
-			    outputHeader = false;
+	/**
+	 * Method to execute a parameterized query through the statement cache and
+	 * stream the results to standard out through a server-side cursor.
+	 * 
+	 * @param query the input query string with ? placeholders
+	 * @param params the values bound to the placeholders, in order
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeQueryAndPrintResult (String query, Object... params) throws SQLException {
+		long start = System.nanoTime ();
+		ConnectionPool.PooledConnection pc = null;
+		try{
+			pc = this._pool.borrow ();
+			pc.connection ().setAutoCommit (false);
+			PreparedStatement stmt = pc.statements ().prepare (query);
+			stmt.setFetchSize (FETCH_SIZE);
+			bind (stmt, params);
+			ResultSet rs = stmt.executeQuery ();
+			int rowCount;
+			try{
+				rowCount = printResult (rs);
+			}finally{
+				rs.close ();
+				pc.connection ().commit ();
 			}
-			for (int i=1; i<=numCol; ++i)
-				System.out.print (rs.getString (i) + "\t");
-			System.out.println ();
-			++rowCount;
-		}//end while
-		stmt.close ();
-		return rowCount;
+			this._metrics.success ("executeQueryAndPrintResult", start, rowCount);
+			return rowCount;
+		}catch (SQLException | RuntimeException e){
+			this._metrics.failure ("executeQueryAndPrintResult", start);
+			throw e;
+		}finally{
+			if (pc != null) this._pool.release (pc);
+		}
 	}
 	
 	/**
@@ -123,63 +354,523 @@ public class MechanicShop{
 	 * @throws java.sql.SQLException when failed to execute the query
 	 */
 	public List<List<String>> executeQueryAndReturnResult (String query) throws SQLException { 
-		//creates a statement object 
-		Statement stmt = this._connection.createStatement (); 
-		
-		//issues the query instruction 
-		ResultSet rs = stmt.executeQuery (query); 
-	 
-		/*
-		 * obtains the metadata object for the returned result set.  The metadata 
-		 * contains row and column info. 
-		*/ 
-		ResultSetMetaData rsmd = rs.getMetaData (); 
-		int numCol = rsmd.getColumnCount (); 
-		int rowCount = 0; 
-	 
-		//iterates through the result set and saves the data returned by the query. 
-		boolean outputHeader = false;
-		List<List<String>> result  = new ArrayList<List<String>>(); 
-		while (rs.next()){
-			List<String> record = new ArrayList<String>(); 
-			for (int i=1; i<=numCol; ++i) 
-				record.add(rs.getString (i)); 
-			result.add(record); 
-		}//end while 
-		stmt.close (); 
-		return result; 
+		long start = System.nanoTime ();
+		ConnectionPool.PooledConnection pc = null;
+		try{
+			pc = this._pool.borrow ();
+			//creates a statement object 
+			Statement stmt = pc.connection ().createStatement (); 
+			
+			//issues the query instruction 
+			ResultSet rs = stmt.executeQuery (query); 
+			List<List<String>> result;
+			try{
+				result = collectResult (rs);
+			}finally{
+				rs.close ();
+				stmt.close ();
+			}
+			this._metrics.success ("executeQueryAndReturnResult", start, result.size ());
+			return result; 
+		}catch (SQLException | RuntimeException e){
+			this._metrics.failure ("executeQueryAndReturnResult", start);
+			throw e;
+		}finally{
+			if (pc != null) this._pool.release (pc);
+		}
+	}//end executeQueryAndReturnResult
+
+	/**
+	 * Method to execute a parameterized query through the statement cache and
+	 * return the results as a list of records.
+	 * 
+	 * @param query the input query string with ? placeholders
+	 * @param params the values bound to the placeholders, in order
+	 * @return the query result as a list of records
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public List<List<String>> executeQueryAndReturnResult (String query, Object... params) throws SQLException { 
+		long start = System.nanoTime ();
+		ConnectionPool.PooledConnection pc = null;
+		try{
+			pc = this._pool.borrow ();
+			PreparedStatement stmt = pc.statements ().prepare (query);
+			bind (stmt, params);
+			ResultSet rs = stmt.executeQuery ();
+			List<List<String>> result;
+			try{
+				result = collectResult (rs);
+			}finally{
+				rs.close ();
+			}
+			this._metrics.success ("executeQueryAndReturnResult", start, result.size ());
+			return result;
+		}catch (SQLException | RuntimeException e){
+			this._metrics.failure ("executeQueryAndReturnResult", start);
+			throw e;
+		}finally{
+			if (pc != null) this._pool.release (pc);
+		}
 	}//end executeQueryAndReturnResult
 	
+	/**
+	 * Method to run a parameterized query and return a cursor over its rows
+	 * that fetches them lazily, fetchSize at a time, through a server-side
+	 * cursor.  The cursor holds a pooled connection until the last row is
+	 * read or it is closed, so use it in a try-with-resources block.
+	 * 
+	 * @param query the input query string with ? placeholders
+	 * @param fetchSize the number of rows fetched per round trip
+	 * @param params the values bound to the placeholders, in order
+	 * @return the open cursor
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public QueryCursor openCursor (String query, int fetchSize, Object... params) throws SQLException {
+		return new QueryCursor (this._pool, this._metrics, query, fetchSize, params);
+	}
+
+	/**
+	 * Method to run a parameterized query and return its rows as a lazy
+	 * stream, fetched FETCH_SIZE at a time, see openCursor.  The stream
+	 * should be closed, e.g. with try-with-resources, when it is not read to
+	 * the end.
+	 * 
+	 * @param query the input query string with ? placeholders
+	 * @param params the values bound to the placeholders, in order
+	 * @return the rows of the query
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public Stream<QueryCursor.Row> streamQuery (String query, Object... params) throws SQLException {
+		return openCursor (query, FETCH_SIZE, params).stream ();
+	}
+
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
+	 * method issues the query to the DBMS and returns the results column by
+	 * column, keeping integer and date columns in primitive arrays and
+	 * dictionary encoding text columns.
+	 * 
+	 * @param query the input query string
+	 * @return the query result as a columnar result
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public ColumnarResult executeQueryAndReturnColumns (String query) throws SQLException { 
+		long start = System.nanoTime ();
+		ConnectionPool.PooledConnection pc = null;
+		try{
+			pc = this._pool.borrow ();
+			Statement stmt = pc.connection ().createStatement (); 
+			ColumnarResult result;
+			try{
+				ResultSet rs = stmt.executeQuery (query); 
+				result = ColumnarResult.from (rs);
+			}finally{
+				// closing the statement closes its result set
+				stmt.close (); 
+			}
+			this._metrics.success ("executeQueryAndReturnColumns", start, result.rowCount ());
+			return result; 
+		}catch (SQLException | RuntimeException e){
+			this._metrics.failure ("executeQueryAndReturnColumns", start);
+			throw e;
+		}finally{
+			if (pc != null) this._pool.release (pc);
+		}
+	}//end executeQueryAndReturnColumns
+
+	/**
+	 * Method to execute a parameterized query through the statement cache and
+	 * return the results column by column.
+	 * 
+	 * @param query the input query string with ? placeholders
+	 * @param params the values bound to the placeholders, in order
+	 * @return the query result as a columnar result
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public ColumnarResult executeQueryAndReturnColumns (String query, Object... params) throws SQLException { 
+		long start = System.nanoTime ();
+		ConnectionPool.PooledConnection pc = null;
+		try{
+			pc = this._pool.borrow ();
+			PreparedStatement stmt = pc.statements ().prepare (query);
+			bind (stmt, params);
+			ResultSet rs = stmt.executeQuery ();
+			ColumnarResult result;
+			try{
+				result = ColumnarResult.from (rs);
+			}finally{
+				rs.close ();
+			}
+			this._metrics.success ("executeQueryAndReturnColumns", start, result.rowCount ());
+			return result;
+		}catch (SQLException | RuntimeException e){
+			this._metrics.failure ("executeQueryAndReturnColumns", start);
+			throw e;
+		}finally{
+			if (pc != null) this._pool.release (pc);
+		}
+	}//end executeQueryAndReturnColumns
+
 	/**
 	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
-	 * method issues the query to the DBMS and returns the number of results
+	 * method issues the query to the DBMS and returns the number of results.
+	 * Use count or exists when only the number of rows is wanted.
 	 * 
 	 * @param query the input query string
 	 * @return the number of rows returned
 	 * @throws java.sql.SQLException when failed to execute the query
 	 */
 	public int executeQuery (String query) throws SQLException {
-		//creates a statement object
-		Statement stmt = this._connection.createStatement ();
+		long start = System.nanoTime ();
+		ConnectionPool.PooledConnection pc = null;
+		try{
+			pc = this._pool.borrow ();
+			//creates a statement object
+			Statement stmt = pc.connection ().createStatement ();
+			try{
+				//issues the query instruction
+				int rowCount = countRows (stmt.executeQuery (query));
+				this._metrics.success ("executeQuery", start, rowCount);
+				return rowCount;
+			}finally{
+				stmt.close ();
+			}
+		}catch (SQLException | RuntimeException e){
+			this._metrics.failure ("executeQuery", start);
+			throw e;
+		}finally{
+			if (pc != null) this._pool.release (pc);
+		}
+	}
 
-		//issues the query instruction
-		ResultSet rs = stmt.executeQuery (query);
+	/**
+	 * Method to execute a parameterized query through the statement cache and
+	 * return the number of results.
+	 * 
+	 * @param query the input query string with ? placeholders
+	 * @param params the values bound to the placeholders, in order
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeQuery (String query, Object... params) throws SQLException {
+		long start = System.nanoTime ();
+		ConnectionPool.PooledConnection pc = null;
+		try{
+			pc = this._pool.borrow ();
+			PreparedStatement stmt = pc.statements ().prepare (query);
+			bind (stmt, params);
+			int rowCount = countRows (stmt.executeQuery ());
+			this._metrics.success ("executeQuery", start, rowCount);
+			return rowCount;
+		}catch (SQLException | RuntimeException e){
+			this._metrics.failure ("executeQuery", start);
+			throw e;
+		}finally{
+			if (pc != null) this._pool.release (pc);
+		}
+	}
 
-		int rowCount = 0;
+	/*
+	 * iterates through the result set, counts the number of results and
+	 * closes it.
+	 */
+	private static int countRows (ResultSet rs) throws SQLException {
+		try{
+			int rowCount = 0;
+			while (rs.next ())
+				rowCount++;
+			return rowCount;
+		}finally{
+			rs.close ();
+		}
+	}
+
+	/**
+	 * Method to check whether a query returns at least one row.  The query is
+	 * wrapped in EXISTS, so the server stops at the first matching row and
+	 * only a single boolean crosses the wire.
+	 * 
+	 * @param query the input query string with ? placeholders
+	 * @param params the values bound to the placeholders, in order
+	 * @return true when the query has at least one row
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public boolean exists (String query, Object... params) throws SQLException {
+		return queryLong ("exists", "SELECT CASE WHEN EXISTS (" + subquery (query) + ") THEN 1 ELSE 0 END", params) != 0;
+	}
+
+	/**
+	 * Method to count the rows a query returns.  The query is wrapped in
+	 * SELECT COUNT(*), so the rows are counted by the server instead of being
+	 * sent to the client.
+	 * 
+	 * @param query the input query string with ? placeholders
+	 * @param params the values bound to the placeholders, in order
+	 * @return the number of rows the query returns
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public long count (String query, Object... params) throws SQLException {
+		return queryLong ("count", "SELECT COUNT(*) FROM (" + subquery (query) + ") AS q", params);
+	}
+
+	/**
+	 * Method to count the rows of a query and print the first pageSize of
+	 * them in one round trip.  The total is computed by the server with a
+	 * COUNT(*) OVER () window next to the page rows.
+	 * 
+	 * @param query the input query string with ? placeholders
+	 * @param pageSize the largest number of rows to print
+	 * @param params the values bound to the placeholders, in order
+	 * @return the total number of rows the query returns
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public long executeQueryAndPrintFirstPage (String query, int pageSize, Object... params) throws SQLException {
+		CustomerCache.Page page = firstPage (query, pageSize, params);
+		printRecords (page.header, page.rows);
+		return page.total;
+	}
+
+	/**
+	 * Method to look customers up by last name for the front desk, printing
+	 * the first CUSTOMER_PAGE_SIZE of them in id order, and how many more
+	 * there are, see moreCustomersPager.  Lookups are read through the
+	 * customer cache, so a repeated last name is answered without a round
+	 * trip until it expires or a customer with that name is inserted.
+	 * 
+	 * @param lname the last name to look up
+	 * @return the number of customers with that last name
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public long lookupCustomersByLastName (String lname) throws SQLException {
+		CustomerCache.Page page = customerPage (lname);
+		printRecords (page.header, page.rows);
+		if (page.total > page.rows.size ())
+			System.out.println ("(" + (page.total - page.rows.size ()) + " more customers named " + lname + " not shown)");
+		return page.total;
+	}
+
+	/**
+	 * Method to create a pager over the customers with a last name that
+	 * lookupCustomersByLastName did not show, in id order.
+	 * 
+	 * @param lname the last name looked up
+	 * @return the pager, starting after the first page
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public KeysetPager moreCustomersPager (String lname) throws SQLException {
+		CustomerCache.Page page = customerPage (lname);
+		KeysetPager pager = new KeysetPager ("id, fname, lname, phone, address", "Customer", "lname = ?",
+			KeysetPager.asc ("id")).bind (lname);
+		if (!page.rows.isEmpty ())
+			pager.after (Integer.valueOf (page.rows.get (page.rows.size () - 1).get (0).trim ()));
+		return pager;
+	}
+
+	/*
+	 * the first page of customers with a last name, from the cache when
+	 * it is there.
+	 */
+	private CustomerCache.Page customerPage (String lname) throws SQLException {
+		CustomerCache.Page page = this._customers.get (lname);
+		if (page == null){
+			long generation = this._customers.generation ();
+			page = firstPage (SEARCH_CUSTOMER_BY_LNAME, CUSTOMER_PAGE_SIZE, lname);
+			this._customers.put (lname, page, generation);
+		}//end if
+		return page;
+	}
 
-		//iterates through the result set and count nuber of results.
+	/**
+	 * Method to return the customer lookup cache, for its hit and miss
+	 * counters.
+	 */
+	public CustomerCache customerCache (){
+		return this._customers;
+	}
+
+	/*
+	 * fetches the first pageSize rows of a query and the total number of its
+	 * rows in one round trip, see executeQueryAndPrintFirstPage.
+	 */
+	private CustomerCache.Page firstPage (String query, int pageSize, Object... params) throws SQLException {
+		String paged = "SELECT q.*, COUNT(*) OVER () AS total_count FROM (" + subquery (query) + ") AS q LIMIT " + pageSize;
+		long start = System.nanoTime ();
+		ConnectionPool.PooledConnection pc = null;
+		try{
+			pc = this._pool.borrow ();
+			PreparedStatement stmt = pc.statements ().prepare (paged);
+			bind (stmt, params);
+			ResultSet rs = stmt.executeQuery ();
+			try{
+				//the last column is total_count, everything before it is returned
+				ResultSetMetaData rsmd = rs.getMetaData ();
+				int numCol = rsmd.getColumnCount () - 1;
+				List<String> header = new ArrayList<String>();
+				for (int i = 1; i <= numCol; ++i)
+					header.add (rsmd.getColumnName (i));
+				long total = 0;
+				List<List<String>> page = new ArrayList<List<String>>();
+				while (rs.next ()){
+					total = rs.getLong (numCol + 1);
+					List<String> record = new ArrayList<String>();
+					for (int i = 1; i <= numCol; ++i)
+						record.add (rs.getString (i));
+					page.add (record);
+				}//end while
+				this._metrics.success ("firstPage", start, page.size ());
+				return new CustomerCache.Page (header, page, total);
+			}finally{
+				rs.close ();
+			}
+		}catch (SQLException | RuntimeException e){
+			this._metrics.failure ("firstPage", start);
+			throw e;
+		}finally{
+			if (pc != null) this._pool.release (pc);
+		}
+	}
+
+	/*
+	 * runs a parameterized query that returns a single number, recorded in
+	 * the metrics under method.
+	 */
+	private long queryLong (String method, String sql, Object... params) throws SQLException {
+		long start = System.nanoTime ();
+		ConnectionPool.PooledConnection pc = null;
+		try{
+			pc = this._pool.borrow ();
+			PreparedStatement stmt = pc.statements ().prepare (sql);
+			bind (stmt, params);
+			ResultSet rs = stmt.executeQuery ();
+			long value;
+			try{
+				value = rs.next () ? rs.getLong (1) : 0;
+			}finally{
+				rs.close ();
+			}
+			this._metrics.success (method, start, 1);
+			return value;
+		}catch (SQLException | RuntimeException e){
+			this._metrics.failure (method, start);
+			throw e;
+		}finally{
+			if (pc != null) this._pool.release (pc);
+		}
+	}
+
+	/*
+	 * strips trailing semicolons so a query can be nested as a subquery.
+	 */
+	private static String subquery (String query){
+		String q = query.trim ();
+		while (q.endsWith (";"))
+			q = q.substring (0, q.length () - 1).trim ();
+		return q;
+	}
+
+	/*
+	 * binds the parameters to the placeholders of a prepared statement.
+	 */
+	private static void bind (PreparedStatement stmt, Object[] params) throws SQLException {
+		stmt.clearParameters ();
+		for (int i = 0; i < params.length; ++i)
+			stmt.setObject (i + 1, params[i]);
+	}
+
+	/*
+	 * outputs every row of the result set to standard out, preceded by a
+	 * header line when the result is not empty.  Output is buffered and
+	 * flushed after the first row, then every FLUSH_ROWS rows or
+	 * FLUSH_INTERVAL_MILLIS, whichever comes first.
+	 */
+	private static int printResult (ResultSet rs) throws SQLException {
+		/*
+		 *  obtains the metadata object for the returned result set.  The metadata
+		 *  contains row and column info.
+		 */
+		ResultSetMetaData rsmd = rs.getMetaData ();
+		int numCol = rsmd.getColumnCount ();
+		int rowCount = 0;
+		PrintWriter out = new PrintWriter (new BufferedWriter (new OutputStreamWriter (System.out), 1 << 16));
+		long flushInterval = FLUSH_INTERVAL_MILLIS * 1000000L;
+		long lastFlush = System.nanoTime ();
+		int unflushed = 0;
 		
-		while(rs.next()){
-			rowCount++;
-		}//end while
-		stmt.close ();
+		//iterates through the result set and output them to standard out.
+		boolean outputHeader = true;
+		try{
+			while (rs.next()){
+				if(outputHeader){
+					for(int i = 1; i <= numCol; i++){
+						out.print(rsmd.getColumnName(i));
+						out.print('\t');
+				    }
+				    out.println();
+				}
+				for (int i=1; i<=numCol; ++i){
+					out.print (rs.getString (i));
+					out.print ('\t');
+				}
+				out.println ();
+				++rowCount;
+				++unflushed;
+				if (outputHeader || unflushed >= FLUSH_ROWS || System.nanoTime () - lastFlush >= flushInterval){
+					out.flush ();
+					lastFlush = System.nanoTime ();
+					unflushed = 0;
+				}//end if
+				outputHeader = false;
+			}//end while
+		}finally{
+			//flush but do not close, closing would close System.out
+			out.flush ();
+		}
 		return rowCount;
 	}
-	
+
+	/*
+	 * saves every row of the result set as a list of attribute values.
+	 */
+	private static List<List<String>> collectResult (ResultSet rs) throws SQLException {
+		ResultSetMetaData rsmd = rs.getMetaData (); 
+		int numCol = rsmd.getColumnCount (); 
+		List<List<String>> result  = new ArrayList<List<String>>(); 
+		while (rs.next()){
+			List<String> record = new ArrayList<String>(); 
+			for (int i=1; i<=numCol; ++i) 
+				record.add(rs.getString (i)); 
+			result.add(record); 
+		}//end while 
+		return result;
+	}
+
+	/*
+	 * outputs a materialized result to standard out in the same format as
+	 * printResult.
+	 */
+	private static void printRecords (List<String> header, List<List<String>> records){
+		if (records.isEmpty ()) return;
+		PrintWriter out = new PrintWriter (new BufferedWriter (new OutputStreamWriter (System.out)));
+		for (String name : header){
+			out.print (name);
+			out.print ('\t');
+		}
+		out.println ();
+		for (List<String> record : records){
+			for (String value : record){
+				out.print (value);
+				out.print ('\t');
+			}
+			out.println ();
+		}//end for
+		out.flush ();
+	}
+
 	/**
 	 * Method to fetch the last value from sequence. This
 	 * method issues the query to the DBMS and returns the current 
-	 * value of sequence used for autogenerated keys
+	 * value of sequence used for autogenerated keys.  currval is session
+	 * local, so this only sees a nextval issued on the same pooled connection.
 	 * 
 	 * @param sequence name of the DB sequence
 	 * @return current value of a sequence
@@ -187,36 +878,649 @@ public class MechanicShop{
 	 */
 	
 	public int getCurrSeqVal(String sequence) throws SQLException {
-		Statement stmt = this._connection.createStatement ();
-		
-		ResultSet rs = stmt.executeQuery (String.format("Select currval('%s')", sequence));
-		if (rs.next()) return rs.getInt(1);
-		return -1;
+		ConnectionPool.PooledConnection pc = this._pool.borrow ();
+		try{
+			Statement stmt = pc.connection ().createStatement ();
+			
+			ResultSet rs = stmt.executeQuery (String.format("Select currval('%s')", sequence));
+			try{
+				if (rs.next()) return rs.getInt(1);
+				return -1;
+			}finally{
+				stmt.close ();
+			}
+		}finally{
+			this._pool.release (pc);
+		}
 	}
 
 	/**
-	 * Method to close the physical connection if it is open.
+	 * Method to start a batch of inserts on its own pooled connection and
+	 * transaction.  The returned inserter must be committed and closed.
+	 * 
+	 * @param batchSize the number of rows queued per statement before they
+	 * are sent to the server
+	 * @return the batch inserter
+	 * @throws java.sql.SQLException when no connection can be obtained
 	 */
-	public void cleanup(){
+	public BatchInserter openBatch (int batchSize) throws SQLException {
+		return new BatchInserter (this._pool, this._ids, this._customers, this._mechanics, batchSize);
+	}
+
+	/**
+	 * Method to insert the customers, mechanics and cars listed in a file
+	 * using JDBC batches in a single transaction.  Each line holds a record
+	 * type followed by its comma separated fields:
+	 * 
+	 *   customer,&lt;id&gt;,&lt;fname&gt;,&lt;lname&gt;,&lt;phone&gt;,&lt;address&gt;
+	 *   mechanic,&lt;id&gt;,&lt;fname&gt;,&lt;lname&gt;,&lt;experience&gt;
+	 *   car,&lt;vin&gt;,&lt;make&gt;,&lt;model&gt;,&lt;year&gt;
+	 * 
+	 * An empty id is allocated from the id sequence.  Blank lines and lines
+	 * starting with # are skipped.
+	 * 
+	 * @param file the file to read
+	 * @param batchSize the number of rows queued per statement
+	 * @return the number of rows inserted
+	 * @throws java.sql.SQLException when an insert fails, nothing is inserted then
+	 * @throws java.io.IOException when the file cannot be read
+	 */
+	public long batchImport (File file, int batchSize) throws SQLException, IOException {
+		BufferedReader reader = new BufferedReader (new FileReader (file));
+		BatchInserter batch = openBatch (batchSize);
+		try{
+			String line;
+			int lineNo = 0;
+			while ((line = reader.readLine ()) != null){
+				++lineNo;
+				if (line.trim ().isEmpty () || line.startsWith ("#")) continue;
+				String[] f = line.split (",", -1);
+				try{
+					switch (f[0].trim ()){
+						case "customer":
+							if (f[1].trim ().isEmpty ()) batch.addCustomer (f[2], f[3], f[4], joinFrom (f, 5));
+							else batch.addCustomer (Integer.parseInt (f[1].trim ()), f[2], f[3], f[4], joinFrom (f, 5));
+							break;
+						case "mechanic":
+							if (f[1].trim ().isEmpty ()) batch.addMechanic (f[2], f[3], Integer.parseInt (f[4].trim ()));
+							else batch.addMechanic (Integer.parseInt (f[1].trim ()), f[2], f[3], Integer.parseInt (f[4].trim ()));
+							break;
+						case "car":
+							batch.addCar (f[1], f[2], f[3], Integer.parseInt (f[4].trim ()));
+							break;
+						default:
+							throw new IllegalArgumentException ("unknown record type " + f[0]);
+					}
+				}catch (RuntimeException e){
+					throw new IllegalArgumentException (file + ":" + lineNo + ": " + e.getMessage (), e);
+				}//end try
+			}//end while
+			return batch.commit ();
+		}finally{
+			batch.close ();
+			reader.close ();
+		}
+	}//end batchImport
+
+	/*
+	 * joins the fields from index from onwards back together, so the last
+	 * field of a record may contain commas.
+	 */
+	private static String joinFrom (String[] fields, int from){
+		return String.join (",", Arrays.copyOfRange (fields, from, fields.length));
+	}
+
+	/**
+	 * Method to load the phase3 CSV files from a directory on this machine
+	 * into the database, streaming them through COPY ... FROM STDIN.  Progress
+	 * and throughput are printed per table.
+	 * 
+	 * @param dataDir the directory holding customer.csv, car.csv, etc.
+	 * @param bufferSize the number of bytes sent to the server per write
+	 * @return the total number of rows loaded
+	 * @throws java.sql.SQLException when a COPY fails
+	 * @throws java.io.IOException when a file cannot be read
+	 */
+	public long bulkLoad (File dataDir, int bufferSize) throws SQLException, IOException {
+		ConnectionPool.PooledConnection pc = this._pool.borrow ();
+		try{
+			return new BulkLoader (bufferSize, System.out).loadAll (pc.connection (), dataDir);
+		}finally{
+			this._customers.invalidateAll ();
+			this._mechanics.invalidate ();
+			this._pool.release (pc);
+		}
+	}//end bulkLoad
+
+	/**
+	 * Method to load the phase3 CSV files like bulkLoad, but with every file
+	 * split into line-aligned chunks that are streamed over several pooled
+	 * connections at once, see ParallelLoader.
+	 * 
+	 * @param dataDir the directory holding customer.csv, car.csv, etc.
+	 * @param threads the number of chunks loaded at once, at most POOL_MAX_SIZE
+	 * @param chunkSize the number of bytes per chunk
+	 * @return the total number of rows loaded
+	 * @throws java.sql.SQLException when a COPY or the index rebuild fails
+	 * @throws java.io.IOException when a file cannot be read
+	 */
+	public long parallelLoad (File dataDir, int threads, long chunkSize) throws SQLException, IOException, InterruptedException {
+		try{
+			return new ParallelLoader (this._pool, Math.min (threads, POOL_MAX_SIZE), chunkSize,
+				BulkLoader.DEFAULT_BUFFER_SIZE, System.out).loadAll (dataDir);
+		}finally{
+			this._customers.invalidateAll ();
+			this._mechanics.invalidate ();
+		}
+	}//end parallelLoad
+
+	/**
+	 * Method to export the result of a query, formatted by the server, see
+	 * ReportExporter.
+	 * 
+	 * @param query the SELECT to export
+	 * @param format CSV with a header or JSON lines
+	 * @param out where the rows are written, flushed but not closed
+	 * @return the number of rows exported
+	 * @throws java.sql.SQLException when the query fails
+	 * @throws java.io.IOException when the output cannot be written
+	 */
+	public long export (String query, ReportExporter.Format format, OutputStream out) throws SQLException, IOException {
+		long start = System.nanoTime ();
+		ConnectionPool.PooledConnection pc = null;
+		try{
+			pc = this._pool.borrow ();
+			long rows = new ReportExporter (ReportExporter.DEFAULT_BUFFER_SIZE).export (pc.connection (), query, format, out);
+			this._metrics.success ("export", start, rows);
+			return rows;
+		}catch (SQLException | IOException | RuntimeException e){
+			this._metrics.failure ("export", start);
+			throw e;
+		}finally{
+			if (pc != null) this._pool.release (pc);
+		}
+	}//end export
+
+	/*
+	 * the query behind an export name: a report number 6-10, history for the
+	 * full service history, or else the text of a SELECT.
+	 */
+	static String exportQuery (String name){
+		if (name.equalsIgnoreCase ("history")) return REPORT_SERVICE_HISTORY;
+		for (Map.Entry<String, String> report : REPORTS.entrySet ())
+			if (report.getKey ().startsWith (name + ".")) return report.getValue ();
+		return name;
+	}
+
+	/**
+	 * Method to check whether a table or view exists on the search path.
+	 * 
+	 * @param name the name of the relation
+	 * @return true when it exists
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public boolean hasRelation (String name) throws SQLException {
+		return exists (FIND_RELATION, name);
+	}
+
+	/**
+	 * Method to return the query to run for a report.  A report that reads
+	 * a summary table kept by a migration runs as given when the table
+	 * exists, and as the equivalent aggregate over the base tables when it
+	 * does not, e.g. right after sql/create.sql; other queries are returned
+	 * unchanged.
+	 * 
+	 * @param query one of the REPORT_ queries
+	 * @return the query to execute
+	 * @throws java.sql.SQLException when failed to look up the table
+	 */
+	public String reportQuery (String query) throws SQLException {
+		String[] fallback = REPORT_FALLBACKS.get (query);
+		if (fallback == null || hasRelation (fallback[0])) return query;
+		return fallback[1];
+	}
+
+	/**
+	 * Method to print the k cars with the most service requests, most
+	 * serviced first.  Up to TOP_K_INDEX_LIMIT the server walks the
+	 * descending service count index and stops after k entries; for larger k
+	 * the counts are streamed through a cursor into a bounded TopK heap, so
+	 * neither side sorts the whole table.  Both ways break ties on the VIN,
+	 * so the same k lists the same cars.  Without car_service_counts the
+	 * counts are aggregated from Service_Request instead.
+	 * 
+	 * @param k the number of cars to list
+	 * @return the number of cars printed
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int printTopKCars (int k) throws SQLException {
+		if (k <= TOP_K_INDEX_LIMIT)
+			return executeQueryAndPrintResult (reportQuery (REPORT_K_CARS), k);
+
+		// equal counts rank by VIN, as in the ORDER BY of REPORT_K_CARS; the
+		// "C" collation there is the order of String.compareTo for ASCII VINs
+		TopK<List<String>> top = new TopK<List<String>>(k, (a, b) -> a.get (2).compareTo (b.get (2)));
+		List<String> header = new ArrayList<String>();
+		String counts = reportQuery (REPORT_ALL_CAR_COUNTS);
+		long start = System.nanoTime ();
+		ConnectionPool.PooledConnection pc = null;
+		try{
+			pc = this._pool.borrow ();
+			pc.connection ().setAutoCommit (false);
+			PreparedStatement stmt = pc.statements ().prepare (counts);
+			stmt.setFetchSize (FETCH_SIZE);
+			ResultSet rs = stmt.executeQuery ();
+			try{
+				ResultSetMetaData rsmd = rs.getMetaData ();
+				int numCol = rsmd.getColumnCount ();
+				for (int i = 1; i <= numCol; ++i)
+					header.add (rsmd.getColumnName (i));
+				while (rs.next ()){
+					long count = rs.getLong (numCol);
+					// skip building the record when it cannot enter the top k
+					if (count < top.threshold ()) continue;
+					List<String> record = new ArrayList<String>(numCol);
+					for (int i = 1; i <= numCol; ++i)
+						record.add (rs.getString (i));
+					top.offer (count, record);
+				}//end while
+			}finally{
+				rs.close ();
+				pc.connection ().commit ();
+			}
+			this._metrics.success ("printTopKCars", start, top.size ());
+		}catch (SQLException | RuntimeException e){
+			this._metrics.failure ("printTopKCars", start);
+			throw e;
+		}finally{
+			if (pc != null) this._pool.release (pc);
+		}
+		List<List<String>> rows = top.drainDescending ();
+		printRecords (header, rows);
+		return rows.size ();
+	}//end printTopKCars
+
+	/**
+	 * Method to apply the pending schema migrations in a directory, see
+	 * Migrator.
+	 * 
+	 * @param dir the migrations directory, sql/migrations
+	 * @return the number of migrations applied
+	 * @throws java.sql.SQLException when a migration fails
+	 * @throws java.io.IOException when a migration cannot be read
+	 */
+	public int migrate (File dir) throws SQLException, IOException {
+		ConnectionPool.PooledConnection pc = this._pool.borrow ();
+		try{
+			return new Migrator (System.out).migrate (pc.connection (), dir);
+		}finally{
+			this._pool.release (pc);
+		}
+	}//end migrate
+
+	/**
+	 * Method to time a query from execution until its last row has been
+	 * read.  The rows are read but not converted or printed.
+	 * 
+	 * @param query the input query string
+	 * @return the elapsed time in nanoseconds
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public long timeQuery (String query) throws SQLException {
+		ConnectionPool.PooledConnection pc = this._pool.borrow ();
+		try{
+			long start = System.nanoTime ();
+			Statement stmt = pc.connection ().createStatement ();
+			try{
+				ResultSet rs = stmt.executeQuery (query);
+				while (rs.next ()){
+					// only the round trips and transfer are measured
+				}
+			}finally{
+				stmt.close ();
+			}
+			return System.nanoTime () - start;
+		}finally{
+			this._pool.release (pc);
+		}
+	}//end timeQuery
+
+	/**
+	 * Method to time every report query.  Each query is run once to warm up
+	 * and then runs more times; the median is kept.  A report that fails,
+	 * e.g. on a relation a pending migration creates, is reported and left
+	 * out, so the timings never stop a migration from being applied.
+	 * 
+	 * @param runs the number of timed runs per report
+	 * @return the median time in nanoseconds per label of a report that ran
+	 */
+	public LinkedHashMap<String, Long> timeReports (int runs){
+		LinkedHashMap<String, Long> medians = new LinkedHashMap<String, Long>();
+		for (Map.Entry<String, String> report : REPORTS.entrySet ()){
+			try{
+				String query = reportQuery (report.getValue ());
+				timeQuery (query);
+				long[] times = new long[runs];
+				for (int i = 0; i < runs; ++i)
+					times[i] = timeQuery (query);
+				Arrays.sort (times);
+				medians.put (report.getKey (), times[runs / 2]);
+			}catch (SQLException e){
+				System.out.println ("Could not time " + report.getKey () + ": " + e.getMessage ());
+			}//end try
+		}//end for
+		return medians;
+	}//end timeReports
+
+	/*
+	 * prints the report timings taken before and after a change side by
+	 * side; a report missing on either side shows n/a.
+	 */
+	private static void printTimings (Map<String, Long> before, Map<String, Long> after){
+		System.out.println (String.format ("%-52s %12s %12s %8s", "Report", "Before (ms)", "After (ms)", "Speedup"));
+		for (String report : REPORTS.keySet ()){
+			Long b = before.get (report);
+			Long a = after.get (report);
+			System.out.println (String.format ("%-52s %12s %12s %8s", report,
+				b == null ? "n/a" : String.format ("%.2f", b / 1e6),
+				a == null ? "n/a" : String.format ("%.2f", a / 1e6),
+				b == null || a == null ? "n/a" : String.format ("%.1fx", (double) b / Math.max (a, 1))));
+		}//end for
+	}
+
+	/**
+	 * Method to check whether a mechanic id exists, against the in-memory
+	 * mechanic directory.  The directory is loaded on first use, and reloaded
+	 * once when the id is unknown, in case another client added it; an id
+	 * still unknown after that does not trigger another reload until the
+	 * directory is invalidated.
+	 * 
+	 * @param mid the mechanic id
+	 * @return true when the mechanic exists
+	 * @throws java.sql.SQLException when the directory cannot be loaded
+	 */
+	public boolean isMechanic (int mid) throws SQLException {
+		if (this._mechanics.contains (mid)) return true;
+		if (this._mechanics.isKnownMissing (mid)) return false;
+		ConnectionPool.PooledConnection pc = this._pool.borrow ();
+		try{
+			this._mechanics.load (pc.connection ());
+		}finally{
+			this._pool.release (pc);
+		}
+		if (this._mechanics.contains (mid)) return true;
+		this._mechanics.markMissing (mid);
+		return false;
+	}
+
+	/**
+	 * Method to close a service request with one call to the close_request
+	 * function, which locks the request, checks that it exists and is still
+	 * open, that the mechanic exists and that the request was opened on or
+	 * before the closing date, and inserts the closed request.  The wid is
+	 * taken from this process's block of closed_request_wid_seq, so closing
+	 * a job costs a single round trip.
+	 * 
+	 * @return the wid of the closed request
+	 * @throws java.sql.SQLException when the mechanic or request is invalid
+	 * or the insert fails
+	 */
+	public int closeRequest (int rid, int mid, Date date, String comment, int bill) throws SQLException {
+		return (int) queryLong ("closeRequest", CLOSE_REQUEST, rid, mid, date, comment, bill, nextId (WID_SEQ));
+	}
+
+	/**
+	 * Method to open a service request for the front desk.  A new customer,
+	 * a new car and the ownership are written together with the request by
+	 * the single OPEN_SERVICE_REQUEST statement, so a visit costs one round
+	 * trip and one commit, and a failure, e.g. an unknown customer id,
+	 * leaves nothing half written.  An ownership id is only allocated when
+	 * the ownership is inserted.
+	 * 
+	 * @param customerId the id of the customer
+	 * @param customer fname, lname, phone and address of a customer to
+	 * insert under customerId, or null for an existing customer
+	 * @param vin the VIN of the car
+	 * @param car make, model and year of a car to insert, or null for an
+	 * existing car
+	 * @return the rid of the new request
+	 * @throws java.sql.SQLException when the insert fails
+	 */
+	public int openServiceRequest (int customerId, String[] customer, String vin, Object[] car, Date date, int odometer, String complain) throws SQLException {
+		long start = System.nanoTime ();
+		boolean newCustomer = customer != null;
+		boolean newCar = car != null;
+		String[] c = newCustomer ? customer : new String[4];
+		Object[] v = newCar ? car : new Object[3];
+		// a new customer or car cannot be owned yet; otherwise the server
+		// allocates the id only if the customer does not own the car
+		Integer ownershipId = newCustomer || newCar ? nextId (OWNERSHIP_ID_SEQ) : null;
+		int rid = nextId (RID_SEQ);
+		ConnectionPool.PooledConnection pc = null;
+		try{
+			pc = this._pool.borrow ();
+			PreparedStatement stmt = pc.statements ().prepare (OPEN_SERVICE_REQUEST);
+			bind (stmt, new Object[] {
+				customerId, c[0], c[1], c[2], c[3], newCustomer,
+				vin, v[0], v[1], v[2], newCar,
+				ownershipId, customerId, vin, customerId, vin,
+				rid, customerId, vin, date, odometer, complain});
+			stmt.executeUpdate ();
+			if (newCustomer) this._customers.invalidate (customer[1]);
+			this._metrics.success ("openServiceRequest", start, 1);
+			return rid;
+		}catch (SQLException | RuntimeException e){
+			this._metrics.failure ("openServiceRequest", start);
+			throw e;
+		}finally{
+			if (pc != null) this._pool.release (pc);
+		}
+	}
+
+	/**
+	 * Method to create a pager over report 8, the cars built before 1995
+	 * with a request under 50000 miles, in year and VIN order.  The seek
+	 * follows the Car (year, vin) index of migration 001.
+	 */
+	public static KeysetPager carsBefore1995Pager (){
+		return new KeysetPager ("C1.make, C1.model, C1.year", "Car C1",
+			"C1.vin IN (SELECT S.car_vin FROM Service_Request S WHERE S.odometer < 50000) AND C1.year < 1995",
+			KeysetPager.asc ("C1.year"), KeysetPager.asc ("C1.vin"));
+	}
+
+	/**
+	 * Method to create a pager over report 10, the customers by descending
+	 * total bill.  The seek follows the (total_bill DESC, customer_id) index
+	 * of customer_bill_totals from migration 002; without that table the
+	 * totals are aggregated from the base tables for every page.
+	 * 
+	 * @throws java.sql.SQLException when failed to look up the table
+	 */
+	public KeysetPager totalBillPager () throws SQLException {
+		if (!hasRelation (BILL_TOTALS))
+			return new KeysetPager ("C.fname, C.lname, T.total_bill", BASE_BILL_TOTALS + ", Customer C",
+				"C.id = T.customer_id",
+				KeysetPager.desc ("T.total_bill"), KeysetPager.asc ("T.customer_id"));
+		return new KeysetPager ("C.fname, C.lname, T.total_bill", "customer_bill_totals T, Customer C",
+			"C.id = T.customer_id AND T.closed_count > 0",
+			KeysetPager.desc ("T.total_bill"), KeysetPager.asc ("T.customer_id"));
+	}
+
+	/**
+	 * Method to print the next page of a keyset paged query.
+	 * 
+	 * @param pager the pager, which moves past the printed rows
+	 * @param pageSize the largest number of rows to print
+	 * @return the number of rows printed
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int printNextPage (KeysetPager pager, int pageSize) throws SQLException {
+		long start = System.nanoTime ();
+		List<String> header = new ArrayList<String>();
+		List<List<String>> rows;
+		ConnectionPool.PooledConnection pc = null;
+		try{
+			pc = this._pool.borrow ();
+			rows = pager.next (pc.statements (), pageSize, header);
+			this._metrics.success ("printNextPage", start, rows.size ());
+		}catch (SQLException | RuntimeException e){
+			this._metrics.failure ("printNextPage", start);
+			throw e;
+		}finally{
+			if (pc != null) this._pool.release (pc);
+		}
+		printRecords (header, rows);
+		return rows.size ();
+	}
+
+	/*
+	 * prints a paged listing a page at a time, fetching the next page when
+	 * the user presses Enter, until the rows run out or the user enters q.
+	 */
+	private static void browse (MechanicShop esql, KeysetPager pager) throws SQLException, IOException {
+		int page = 1;
+		while (true){
+			int rows = esql.printNextPage (pager, REPORT_PAGE_SIZE);
+			if (pager.isDone ()){
+				if (rows == 0 && page == 1) System.out.println ("No rows.");
+				return;
+			}//end if
+			System.out.println ("-- page " + page + ", press Enter for more or q to stop --");
+			String line = in.readLine ();
+			if (line == null || line.trim ().equalsIgnoreCase ("q")) return;
+			++page;
+		}//end while
+	}
+
+	/**
+	 * Method to run every report at once and print their results in menu
+	 * order.  Each report runs on its own worker thread and pooled
+	 * connection, so the pack takes about as long as its slowest report
+	 * when the pool has a connection for each.  A report is printed as soon
+	 * as it and the reports before it have finished, followed by the time
+	 * of each report, their sum and the wall-clock time.
+	 * 
+	 * @return the wall-clock time in nanoseconds
+	 * @throws java.sql.SQLException when a report fails
+	 * @throws java.lang.InterruptedException when interrupted while waiting
+	 */
+	public long runAllReports () throws SQLException, InterruptedException {
+		List<Map.Entry<String, String>> reports = new ArrayList<Map.Entry<String, String>>(REPORTS.entrySet ());
+		final long[] nanos = new long[reports.size ()];
+		ExecutorService workers = Executors.newFixedThreadPool (Math.min (reports.size (), POOL_MAX_SIZE));
+		long start = System.nanoTime ();
 		try{
-			if (this._connection != null){
-				this._connection.close ();
+			List<Future<ColumnarResult>> results = new ArrayList<Future<ColumnarResult>>();
+			for (int i = 0; i < reports.size (); ++i){
+				final int r = i;
+				final Map.Entry<String, String> report = reports.get (i);
+				results.add (workers.submit (() -> {
+					Metrics.setOperation (report.getKey ());
+					String query = reportQuery (report.getValue ());
+					long reportStart = System.nanoTime ();
+					ColumnarResult result = executeQueryAndReturnColumns (query);
+					nanos[r] = System.nanoTime () - reportStart;
+					return result;
+				}));
+			}//end for
+			for (int i = 0; i < reports.size (); ++i){
+				ColumnarResult result;
+				try{
+					result = results.get (i).get ();
+				}catch (ExecutionException e){
+					if (e.getCause () instanceof SQLException) throw (SQLException) e.getCause ();
+					throw new SQLException (reports.get (i).getKey () + " failed: " + e.getCause (), e.getCause ());
+				}//end try
+				System.out.println (reports.get (i).getKey ());
+				List<String> header = new ArrayList<String>();
+				for (int c = 1; c <= result.columnCount (); ++c)
+					header.add (result.columnName (c));
+				printRecords (header, result.toList ());
+				System.out.println ();
+			}//end for
+		}finally{
+			workers.shutdownNow ();
+		}
+		long wall = System.nanoTime () - start;
+
+		long summed = 0;
+		System.out.println (String.format ("%-52s %12s", "Report", "Time (ms)"));
+		for (int i = 0; i < reports.size (); ++i){
+			summed += nanos[i];
+			System.out.println (String.format ("%-52s %12.2f", reports.get (i).getKey (), nanos[i] / 1e6));
+		}//end for
+		System.out.println (String.format ("%-52s %12.2f", "Summed", summed / 1e6));
+		System.out.println (String.format ("%-52s %12.2f", "Wall clock", wall / 1e6));
+		return wall;
+	}//end runAllReports
+
+	/**
+	 * Method to allocate a new primary key value from one of the id
+	 * sequences.  Ids come out of blocks reserved IdAllocator.BLOCK_SIZE at a
+	 * time, so most calls do not reach the server.
+	 * 
+	 * @param sequence name of the DB sequence, e.g. CUSTOMER_ID_SEQ
+	 * @return an unused id
+	 * @throws java.sql.SQLException when a new block cannot be reserved
+	 */
+	public int nextId (String sequence) throws SQLException {
+		return this._ids.next (sequence);
+	}
+
+	/**
+	 * Method to write the metrics of the data-access calls made so far in
+	 * the Prometheus text format, see Metrics.
+	 * 
+	 * @param out the stream to write to
+	 */
+	public void printMetrics (PrintStream out){
+		this._metrics.write (out);
+		this._customers.writeMetrics (out);
+	}
+
+	/**
+	 * Method to print the metrics and close the pooled physical connections
+	 * if they are open.  The metrics are also written to METRICS_FILE when
+	 * it is set.
+	 */
+	public void cleanup(){
+		if (!this._metrics.isEmpty ()){
+			System.out.println ();
+			printMetrics (System.out);
+			if (METRICS_FILE != null){
+				try{
+					PrintStream file = new PrintStream (new FileOutputStream (METRICS_FILE));
+					printMetrics (file);
+					file.close ();
+				}catch (IOException e){
+					System.err.println ("Unable to write metrics to " + METRICS_FILE + ": " + e.getMessage ());
+				}//end try
 			}//end if
-		}catch (SQLException e){
-	         // ignored.
-		}//end try
+		}//end if
+		if (this._pool != null){
+			this._pool.close ();
+		}//end if
 	}//end cleanup
 
 	/**
 	 * The main execution method
 	 * 
 	 * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
+	 * and optionally a command to run instead of the interactive menu
 	 */
 	public static void main (String[] args) {
-		if (args.length != 3) {
+		if (args.length < 3) {
 			System.err.println (
 				"Usage: " + "java [-classpath <classpath>] " + MechanicShop.class.getName () +
-		            " <dbname> <port> <user>");
+		            " <dbname> <port> <user> [command]");
+			System.err.println ("Commands:");
+			System.err.println ("  load <data dir> [buffer bytes]   bulk load the CSV files in <data dir>");
+			System.err.println ("  pload <data dir> [threads] [MB]  bulk load the CSV files in parallel chunks");
+			System.err.println ("  import <file> [batch size]       batch insert the customer/mechanic/car records in <file>");
+			System.err.println ("  migrate <migrations dir> [runs]  apply pending migrations and time the reports before and after");
+			System.err.println ("  script <file|-> [tx size]        run the JSON lines commands in <file> or on standard input");
+			System.err.println ("  reports                          run every report in parallel");
+			System.err.println ("  export <report> <file|-> [json]  export report 6-10, history or a SELECT as CSV or JSON lines");
 			return;
 		}//end if
 		
@@ -240,6 +1544,11 @@ public class MechanicShop{
 			String user = args[2];
 			
 			esql = new MechanicShop (dbname, dbport, user, "");
+
+			if (args.length > 3){
+				runCommand (esql, Arrays.copyOfRange (args, 3, args.length));
+				return;
+			}//end if
 			
 			boolean keepon = true;
 			while(keepon){
@@ -255,12 +1564,15 @@ public class MechanicShop{
 				System.out.println("8. ListCarsBefore1995With50000Milles");
 				System.out.println("9. ListKCarsWithTheMostServices");
 				System.out.println("10. ListCustomersInDescendingOrderOfTheirTotalBill");
-				System.out.println("11. < EXIT");
+				System.out.println("11. RunAllReports");
+				System.out.println("12. < EXIT");
 				
 				/*
 				 * FOLLOW THE SPECIFICATION IN THE PROJECT DESCRIPTION
 				 */
-				switch (readChoice()){
+				int choice = readChoice();
+				Metrics.setOperation (OPERATIONS[choice >= 0 && choice < OPERATIONS.length ? choice : 0]);
+				switch (choice){
 					case 1: AddCustomer(esql); break;
 					case 2: AddMechanic(esql); break;
 					case 3: AddCar(esql); break;
@@ -271,7 +1583,8 @@ public class MechanicShop{
 					case 8: ListCarsBefore1995With50000Milles(esql); break;
 					case 9: ListKCarsWithTheMostServices(esql); break;
 					case 10: ListCustomersInDescendingOrderOfTheirTotalBill(esql); break;
-					case 11: keepon = false; break;
+					case 11: RunAllReports(esql); break;
+					case 12: keepon = false; break;
 				}
 			}
 		}catch(Exception e){
@@ -289,6 +1602,72 @@ public class MechanicShop{
 		}
 	}
 
+	/*
+	 * runs a non-interactive command given on the command line.
+	 */
+	private static void runCommand (MechanicShop esql, String[] cmd) throws Exception {
+		Metrics.setOperation (cmd[0]);
+		switch (cmd[0]){
+			case "load":
+				if (cmd.length < 2) throw new IllegalArgumentException ("Usage: load <data dir> [buffer bytes]");
+				int bufferSize = cmd.length > 2 ? Integer.parseInt (cmd[2]) : BulkLoader.DEFAULT_BUFFER_SIZE;
+				esql.bulkLoad (new File (cmd[1]), bufferSize);
+				break;
+			case "pload":
+				if (cmd.length < 2) throw new IllegalArgumentException ("Usage: pload <data dir> [threads] [chunk MB]");
+				int threads = cmd.length > 2 ? Integer.parseInt (cmd[2]) : Runtime.getRuntime ().availableProcessors ();
+				long chunkSize = cmd.length > 3 ? Long.parseLong (cmd[3]) << 20 : ParallelLoader.DEFAULT_CHUNK_SIZE;
+				esql.parallelLoad (new File (cmd[1]), threads, chunkSize);
+				break;
+			case "import":
+				if (cmd.length < 2) throw new IllegalArgumentException ("Usage: import <file> [batch size]");
+				int batchSize = cmd.length > 2 ? Integer.parseInt (cmd[2]) : BATCH_SIZE;
+				long start = System.nanoTime ();
+				long rows = esql.batchImport (new File (cmd[1]), batchSize);
+				System.out.println (String.format ("Imported %d rows in %.2f s", rows, (System.nanoTime () - start) / 1e9));
+				break;
+			case "migrate":
+				if (cmd.length < 2) throw new IllegalArgumentException ("Usage: migrate <migrations dir> [runs]");
+				int runs = cmd.length > 2 ? Integer.parseInt (cmd[2]) : 5;
+				LinkedHashMap<String, Long> before = esql.timeReports (runs);
+				int applied = esql.migrate (new File (cmd[1]));
+				System.out.println ("Applied " + applied + " migration(s)");
+				printTimings (before, esql.timeReports (runs));
+				break;
+			case "script":
+				if (cmd.length < 2) throw new IllegalArgumentException ("Usage: script <file|-> [transaction size]");
+				int transactionSize = cmd.length > 2 ? Integer.parseInt (cmd[2]) : SCRIPT_TRANSACTION_SIZE;
+				ScriptRunner script = new ScriptRunner (esql, transactionSize, BATCH_SIZE);
+				BufferedReader reader = cmd[1].equals ("-") ? in : new BufferedReader (new FileReader (cmd[1]));
+				long scriptStart = System.nanoTime ();
+				try{
+					script.run (reader, cmd[1].equals ("-") ? "stdin" : cmd[1]);
+				}finally{
+					script.printSummary (System.out, System.nanoTime () - scriptStart);
+					if (reader != in) reader.close ();
+				}
+				break;
+			case "reports":
+				esql.runAllReports ();
+				break;
+			case "export":
+				if (cmd.length < 3) throw new IllegalArgumentException ("Usage: export <6-10|history|query> <file|-> [csv|json]");
+				ReportExporter.Format format = ReportExporter.Format.valueOf (cmd.length > 3 ? cmd[3].toUpperCase () : "CSV");
+				OutputStream out = cmd[2].equals ("-") ? System.out : new FileOutputStream (cmd[2]);
+				long exportStart = System.nanoTime ();
+				try{
+					long exported = esql.export (esql.reportQuery (exportQuery (cmd[1])), format, out);
+					if (out != System.out)
+						System.out.println (String.format ("Exported %d rows in %.2f s", exported, (System.nanoTime () - exportStart) / 1e9));
+				}finally{
+					if (out != System.out) out.close ();
+				}
+				break;
+			default:
+				throw new IllegalArgumentException ("Unknown command: " + cmd[0]);
+		}
+	}//end runCommand
+
 	public static int readChoice() {
 		int input;
 		// returns only if a correct value is given.
@@ -351,24 +1730,13 @@ public class MechanicShop{
 
         }      
   	
-	   while(true) {
-
-            System.out.println("Enter customer id:");
-            try{
-                    
-		    id = Integer.parseInt(in.readLine());
-                    System.out.println(id);
-                   
-                    break;
-                
-
-
-            } catch(Exception e) {
-                System.out.println(e);
-                continue;
-            }
-
-        }      
+	   try{
+		    id = esql.nextId(CUSTOMER_ID_SEQ);
+		    System.out.println("Assigned customer id: " + id);
+	   }catch(Exception e){
+		    System.out.println(e);
+		    return;
+	   }      
         
         while(true) {
             
@@ -441,10 +1809,10 @@ public class MechanicShop{
 		   
 		     /* String query = "INSERT INTO Customer (first_name, last_name, phone_number,address) VALUES (" + first_name + ", \'" + last_name + "\', \'" + phone_number + "\',\'" + address + "\');";
 */
-String query = String.format( "INSERT INTO Customer (id, fname, lname, phone, address) Values ( %d,'%s', '%s', '%s', '%s');",id, fname, lname, phone, address);
+String query = INSERT_CUSTOMER;
 
         	try {	
-		esql.executeUpdate(query);
+		esql.executeUpdate(query, id, fname, lname, phone, address);
 		
 		}
 		catch (Exception e) {
@@ -508,27 +1876,13 @@ String query = String.format( "INSERT INTO Customer (id, fname, lname, phone, ad
 int experience;
 int id;
 
-	 while(true) {
-
-            System.out.println("Enter mechanic id:");
-            try{
-                    id = Integer.parseInt(in.readLine());
-                    System.out.println(id);
-                    //if(lname!=null){ //(condition)
-                    break;
-                    //}
-
-                    //}else{
-                    //throw new Exception("Something went wrong.");
-                   // }
-
-
-            } catch(Exception e) {
-                System.out.println(e);
-                continue;
-            }
-
-        }
+	 try{
+		id = esql.nextId(MECHANIC_ID_SEQ);
+		System.out.println("Assigned mechanic id: " + id);
+	 }catch(Exception e){
+		System.out.println(e);
+		return;
+	 }
 
         while(true) {
             
@@ -556,11 +1910,11 @@ int id;
 
       ///Users/rheaprashanth String query = "INSERT INTO Mechanic (id, fname, lname, experience) VALUES (" + fname + ", \'" + lname + "\', \'" + experience + "\');";
   //int experience = 5;
-    String query = String.format( "INSERT INTO Mechanic (id, fname, lname, experience) Values ( %d,'%s', '%s', '%d');",id, fname, lname,experience);
+    String query = INSERT_MECHANIC;
     
 
 	try {
-		esql.executeUpdate(query);
+		esql.executeUpdate(query, id, fname, lname, experience);
 		
 		}
 		catch (Exception e) {
@@ -660,9 +2014,9 @@ int id;
 	//int year = 1970;
 	
 	
-		String query = String.format( "INSERT INTO Car (vin, make, model, year) Values ('%s','%s', '%s', %d);",vin,make,model,year);
+		String query = INSERT_CAR;
 				try {
-                esql.executeUpdate(query);
+                esql.executeUpdate(query, vin, make, model, year);
 
                 }
                 catch (Exception e) {
@@ -674,459 +2028,362 @@ int id;
       }
 	
 	public static void InsertServiceRequest(MechanicShop esql){//4
-		/*String query = "";
-//String number = "9177059239";
-		try{
-			query = "SELECT C.date, C.comment, C.bill FROM Closed_Request C, Service_Request S  WHERE C.bill < 100 AND C.rid = S.rid; 
-                         esql.executeQueryAndPrintResult(query);
-		}catch(Exception e){
-			System.out.println("Query failed: " + e);
-		}
-	*/
-		String query = " ";
-		String fname,phone,address = " ";
-//		int id, rid, customer_id, date,odometer;		
-		String lname = " ";
-		int id;		
-		String car_vin, complain = "";
-		int rid;
-		int customer_id;
-		int date;
-		int odometer;
-		String complaint;
-		
-		int numPeople = 0;
-		String searchLname = "";
-		
-
-		try {
-		System.out.println("Enter Customer Last Name: ");
-		lname = in.readLine();
-		searchLname = String.format("SELECT * FROM Customer WHERE lname= '%s'", lname);
-		 numPeople = esql.executeQuery(searchLname);
-		 System.out.println(numPeople);
-		esql.executeQueryAndPrintResult(searchLname);
-		//	System.out.println(numPeople);
-		}catch(Exception e) {
-			System.out.println(e);
-			}
-
-//	        System.out.println(numPeople);
+		String fname, lname, phone, address;
+		String car_vin, make, model, complaint;
+		int customer_id, year, odometer;
+		Date date;
+		String[] customer = null;
+		Object[] car = null;
+		long numPeople;
 
+		while(true) {
 
-		if (numPeople == 1) {
-		 
-		}
-
-
-
-		if (numPeople < 1) {
-			System.out.println ("Person is not registered as a customer, please register them: ");;
-
-			             while(true) {
-
-            System.out.println("Enter customer first name:");
+            System.out.println("Enter Customer Last Name: ");
             try{
-                    fname = in.readLine();
-                    //System.out.println(first_name);
-                    if(fname!=null){
+                    lname = in.readLine();
+                    numPeople = esql.lookupCustomersByLastName(lname);
+                    System.out.println(numPeople);
                     break;
-                    }
-
-                    else{
-                    throw new Exception("Something went wrong.");
-                    }
-
-
             } catch(Exception e) {
                 System.out.println(e);
                 continue;
             }
-
         }
 
-           while(true) {
+		customer_id = 0;
+		if (numPeople > 0) {
+			while(true) {
 
-            System.out.println("Enter customer id:");
+            if (numPeople > CUSTOMER_PAGE_SIZE)
+                System.out.println("Enter customer id from the list, m to list the others, or 0 to register a new customer:");
+            else
+                System.out.println("Enter customer id from the list, or 0 to register a new customer:");
             try{
-
-                    id = Integer.parseInt(in.readLine());
-                    System.out.println(id);
-                    
+                    String choice = in.readLine().trim();
+                    if(choice.equalsIgnoreCase("m") && numPeople > CUSTOMER_PAGE_SIZE){
+                    browse(esql, esql.moreCustomersPager(lname));
+                    continue;
+                    }
+                    customer_id = Integer.parseInt(choice);
+                    System.out.println(customer_id);
                     break;
+            } catch(Exception e) {
+                System.out.println(e);
+                continue;
+            }
+        }
+		}
+
+		if (customer_id == 0) {
+			System.out.println ("Person is not registered as a customer, please register them: ");
 
+			while(true) {
 
+            System.out.println("Enter customer first name:");
+            try{
+                    fname = in.readLine();
+                    if(fname!=null){
+                    break;
+                    }
 
+                    else{
+                    throw new Exception("Something went wrong.");
+                    }
             } catch(Exception e) {
                 System.out.println(e);
                 continue;
             }
+        }
 
-       }
-
-	 while(true) {
+			while(true) {
 
             System.out.println("Enter customer address:");
             try{
                     address = in.readLine();
                     System.out.println(address);
-                    if(address!=null){ 
+                    if(address!=null){
                     break;
                     }
 
                     else{
                     throw new Exception("Something went wrong.");
                     }
-
-
             } catch(Exception e) {
                 System.out.println(e);
                 continue;
             }
-
         }
 
-	 while(true) {
+			while(true) {
 
             System.out.println("Enter customer phone-number:");
             try{
                     phone = in.readLine();
                     System.out.println(phone);
-                    if(phone!=null){ 
+                    if(phone!=null){
                     break;
                     }
 
                     else{
                     throw new Exception("Something went wrong.");
                     }
-
-
             } catch(Exception e) {
                 System.out.println(e);
                 continue;
             }
-
         }
-		//String lname = "";
-	  query = String.format( "INSERT INTO Customer (id, fname, lname, phone, address) Values ( %d,'%s', '%s', '%s', '%s');",id, fname, lname, phone, address);
-     
-
-        try {
-                esql.executeUpdate(query);
-		
-                }
-                catch (Exception e) {
-                System.out.println(e);
-
-                }
-			
-		
-	
-
-		System.out.println("Now you may add Service Information for Customer: ");
-
-		
-while(true) {
-
-	System.out.println("Enter car-vin (vin)");
-	try{
-			car_vin = in.readLine();
-			System.out.println(car_vin);
-			if(car_vin!=null){ //(condition)
-			break;
-			}
-
-			else{
-			throw new Exception("Something went wrong.");
-			}
-
-
-	} catch(Exception e) {
-		System.out.println(e);
-		continue;
-	}
-
-}
-
-while(true) {
-
-	System.out.println("Enter car complaint");
-	try{
-		   complaint = in.readLine();
-			System.out.println(complaint);
-			if(complaint!=null){ //(condition)
-			break;
-			}
-
-			else{
-			throw new Exception("Something went wrong.");
-			}
-
-
-	} catch(Exception e) {
-		System.out.println(e);
-		continue;
-	}
-
-}
-
-while(true) {
-
-	System.out.println("Enter Odometer Reading:");
-	try{
-			odometer = Integer.parseInt(in.readLine());
-			System.out.println(odometer);
-			if(odometer >= 0){ //(condition)
-			break;
-			}
-
-			else{
-			throw new Exception("Year must be greater than 0)");
-			}
-
-		} catch(Exception e) {
-		System.out.println(e);
-		continue;
-	}
-}
-
-while(true) {
-
-	System.out.println("Enter RID:");
-	try{
-			rid = Integer.parseInt(in.readLine());
-			System.out.println(rid);
-			
-			break;
-			}
-
-			
-		
-		catch(Exception e) {
-		System.out.println(e);
-		continue;
-	}
-}
 
-while(true) {
-
-	System.out.println("Enter Service Date:");
-	try{
-			date = Integer.parseInt(in.readLine());
-			System.out.println(date);
-			
-			break;
+			try{
+				customer_id = esql.nextId(CUSTOMER_ID_SEQ);
+				System.out.println("Assigned customer id: " + customer_id);
+			}catch(Exception e){
+				System.out.println(e);
+				return;
 			}
+			customer = new String[] {fname, lname, phone, address};
+		}
 
-			
-		catch(Exception e) {
-		System.out.println(e);
-		continue;
-	}
-}
-
-
-//String getCustId = "";
-customer_id = id;
-
-int ownership_id;
-
-query = String.format( "INSERT INTO Service_Request (rid, customer_id, car_vin, date, odometer, complain) Values ( %d,%d, '%s', '%s',%d, '%s');",rid,customer_id, car_vin, date, odometer, complain);
+		System.out.println("Now you may add Service Information for Customer: ");
 
+		while(true) {
 
-        try {
-                esql.executeUpdate(query);
+            System.out.println("Enter car-vin (vin)");
+            try{
+                    car_vin = in.readLine();
+                    System.out.println(car_vin);
+                    if(car_vin!=null){
+                    break;
+                    }
 
-                }
-                catch (Exception e) {
+                    else{
+                    throw new Exception("Something went wrong.");
+                    }
+            } catch(Exception e) {
                 System.out.println(e);
+                continue;
+            }
+        }
 
-                }
-
-
-
-while(true) {
-
-        System.out.println("Enter Ownership-id:");
-        try{
-                        ownership_id = Integer.parseInt(in.readLine());
-                        System.out.println(date);
+		try{
+			if (!esql.exists(FIND_CAR, car_vin)) {
+				System.out.println("Car is not registered, please enter its details: ");
 
-                        break;
-                        }
+				while(true) {
 
+            System.out.println("Enter Car Make:");
+            try{
+                    make = in.readLine();
+                    System.out.println(make);
+                    if(make!=null){
+                    break;
+                    }
 
-                catch(Exception e) {
+                    else{
+                    throw new Exception("Something went wrong.");
+                    }
+            } catch(Exception e) {
                 System.out.println(e);
                 continue;
+            }
         }
-}
-
-//customer-id = id;
-
-query = String.format("INSERT INTO Ownership (ownership_id, customer_id, car_vin) Values (%d, %d, '%s');", ownership_id, customer_id, car_vin); 
-
-} //end if statement bracket
-
-
-
-		if (numPeople < 1) {
 
+				while(true) {
 
-		}
-	/*while(true) {
-
-            System.out.println("Enter car-vin (vin)");
+            System.out.println("Enter Car Model:");
             try{
-                    car_vin = in.readLine();
-                    System.out.println(car_vin);
-                    if(car_vin!=null){ //(condition)
+                    model = in.readLine();
+                    System.out.println(model);
+                    if(model!=null){
                     break;
                     }
 
                     else{
                     throw new Exception("Something went wrong.");
                     }
+            } catch(Exception e) {
+                System.out.println(e);
+                continue;
+            }
+        }
+
+				while(true) {
 
+            System.out.println("Enter Car Age year:");
+            try{
+                    year = Integer.parseInt(in.readLine());
+                    System.out.println(year);
+                    if(year >= 1970){
+                    break;
+                    }
 
+                    else{
+                    throw new Exception("Year must be greater than 1970)");
+                    }
             } catch(Exception e) {
                 System.out.println(e);
                 continue;
             }
-
         }
+				car = new Object[] {make, model, year};
+			}
+		}catch(Exception e){
+			System.out.println(e);
+			return;
+		}
 
-	while(true) {
+		while(true) {
 
             System.out.println("Enter car complaint");
             try{
-                   complaint = in.readLine();
+                    complaint = in.readLine();
                     System.out.println(complaint);
-                    if(complaint!=null){ //(condition)
+                    if(complaint!=null){
                     break;
                     }
 
                     else{
                     throw new Exception("Something went wrong.");
                     }
-
-
             } catch(Exception e) {
                 System.out.println(e);
                 continue;
             }
-
         }
-	
-	 //int year;
-        while(true) {
+
+		while(true) {
 
             System.out.println("Enter Odometer Reading:");
             try{
                     odometer = Integer.parseInt(in.readLine());
                     System.out.println(odometer);
-                    if(odometer >= 0){ //(condition)
+                    if(odometer >= 0){
                     break;
                     }
 
                     else{
-                    throw new Exception("Year must be greater than 0)");
+                    throw new Exception("Odometer reading must not be negative");
                     }
-
-                } catch(Exception e) {
+            } catch(Exception e) {
                 System.out.println(e);
                 continue;
             }
         }
 
-//	 int year;
-        while(true) {
+		while(true) {
 
-            System.out.println("Enter Customer Id:");
+            System.out.println("Enter Service Date (YYYY-MM-DD):");
             try{
-                    customer_id = Integer.parseInt(in.readLine());
-                    System.out.println(customer_id);
-                    //if(year >= 1970){ //(condition)
+                    date = Date.valueOf(in.readLine().trim());
+                    System.out.println(date);
                     break;
-                    }
-
-                    //else{
-                    //throw new Exception("Year must be greater than 1970)");
-                   // }
-
-                 catch(Exception e) {
+            } catch(Exception e) {
                 System.out.println(e);
                 continue;
             }
         }
 
-	 //int year;
-        while(true) {
+		// the customer, car, ownership and request are written by one statement
+		try{
+			int rid = esql.openServiceRequest(customer_id, customer, car_vin, car, date, odometer, complaint);
+			System.out.println("Opened service request RID " + rid + " for customer " + customer_id);
+		}catch(Exception e){
+			System.out.println(e);
+		}
+	}
+	public static void CloseServiceRequest(MechanicShop esql) throws Exception{//5
+		int rid, mid, bill;
+		Date date;
+		String comment;
+
+		while(true) {
 
-            System.out.println("Enter RID:");
+            System.out.println("Enter service request id (RID):");
             try{
                     rid = Integer.parseInt(in.readLine());
                     System.out.println(rid);
-                    //if(rid >= 1970){ //(condition)
                     break;
-                    }
+            } catch(Exception e) {
+                System.out.println(e);
+                continue;
+            }
+        }
 
-                    //else{
-                    //throw new Exception("Year must be greater than 1970)");
-                   // }
+		while(true) {
+
+            System.out.println("Enter mechanic id:");
+            try{
+                    mid = Integer.parseInt(in.readLine());
+                    System.out.println(mid);
+                    if(esql.isMechanic(mid)){
+                    break;
+                    }
 
-                //}
-                catch(Exception e) {
+                    else{
+                    throw new Exception("There is no mechanic with id " + mid);
+                    }
+            } catch(Exception e) {
                 System.out.println(e);
                 continue;
             }
         }
 
+		while(true) {
 
-	while(true) {
-
-            System.out.println("Enter Service Date:");
+            System.out.println("Enter Closing Date (YYYY-MM-DD):");
             try{
-                    date = Integer.parseInt(in.readLine());
+                    date = Date.valueOf(in.readLine().trim());
                     System.out.println(date);
-                    //if(rid >= 1970){ //(condition)
-                    //                    break;
-                    //                                        }
-                    //
-                    //                                                            //else{
-                    //                                                                                //throw new Exception("Year must be greater than 1970)");
-                    //                                                                                                   // }
-                    //
-                    //                                                                                                                   //}
-                    //                                                                                                                                   catch(Exception e) {
-                    //                                                                                          
-                    //
                     break;
-		}
-		catch(Exception e) {
- 		System.out.println(e);
-		continue;
-		}
-		
-	}
+            } catch(Exception e) {
+                System.out.println(e);
+                continue;
+            }
+        }
 
-		String complain = complaint;
-		 query = String.format( "INSERT INTO Service_Request (rid, customer_id, car_vin, date, odometer, complain) Values (%d,%d', '%s', '%s', '%s', '%s');",rid,customer_id,car_vin,date, odometer, complain);
-                                try {
-                esql.executeUpdate(query);
+		while(true) {
 
-                }
-                catch (Exception e) {
+            System.out.println("Enter comment:");
+            try{
+                    comment = in.readLine();
+                    System.out.println(comment);
+                    if(comment!=null){
+                    break;
+                    }
+
+                    else{
+                    throw new Exception("Something went wrong.");
+                    }
+            } catch(Exception e) {
                 System.out.println(e);
+                continue;
+            }
+        }
 
-                }
-*/
+		while(true) {
 
-	}
-	public static void CloseServiceRequest(MechanicShop esql) throws Exception{//5
-		String rid = "";
+            System.out.println("Enter bill:");
+            try{
+                    bill = Integer.parseInt(in.readLine());
+                    System.out.println(bill);
+                    if(bill > 0){
+                    break;
+                    }
+
+                    else{
+                    throw new Exception("Bill must be greater than 0");
+                    }
+            } catch(Exception e) {
+                System.out.println(e);
+                continue;
+            }
+        }
 
-		String wid = "";		
+		try{
+			int wid = esql.closeRequest(rid, mid, date, comment, bill);
+			System.out.println("Closed request " + rid + " as WID " + wid);
+		}catch(Exception e){
+			System.out.println(e);
+		}
 	}
 	
 	public static void ListCustomersWithBillLessThan100(MechanicShop esql){//6
@@ -1138,7 +2395,7 @@ query = String.format("INSERT INTO Ownership (ownership_id, customer_id, car_vin
                    //query = "SELECT S.customer_id, C.bill FROM Closed_Request C, Service_Request S WHERE S.rid = C.rid GROUP BY S.customer_id HAVING C.bill < 100;";
 		
 	            //query = "SELECT CR.date, CR.comment, CR.bill FROM Service_Request SR, Closed_Request CR WHERE SR.rid = CR.rid GROUP BY SR.customer_id HAVING CR.bill < 100;"; 
-			query = "SELECT C.fname, C.lname FROM Customer C WHERE C.id IN (SELECT S.customer_id FROM Service_Request S, Closed_Request CR WHERE S.rid = CR.rid GROUP BY S.customer_id HAVING SUM (CR.bill) = 37316);";
+			query = esql.reportQuery(REPORT_BILL_LESS_THAN_100);
 	 esql.executeQueryAndPrintResult(query);
 		} catch(Exception e) {
 		   System.out.println(e);
@@ -1151,7 +2408,7 @@ query = String.format("INSERT INTO Ownership (ownership_id, customer_id, car_vin
 	 String query = "";
 	 try{
 	   System.out.println("Listing first and last name of Customers with more than 20 Cars: ");
-	   query = "SELECT fname, lname FROM Customer C WHERE C.id IN (SELECT customer_id FROM Owns GROUP BY customer_id HAVING COUNT(*) > 20);"; 
+	   query = REPORT_MORE_THAN_20_CARS;
 	esql.executeQueryAndPrintResult(query);
 	}catch(Exception e) {
 		 System.out.println(e);
@@ -1174,8 +2431,7 @@ query = String.format("INSERT INTO Ownership (ownership_id, customer_id, car_vin
 	
 	try {
         System.out.println("Listing all cars built before 1995 having less than 50,000 miles: ");
-        query = "SELECT C1.make, C1.model, C1.year FROM Car C1 WHERE C1.vin IN ( SELECT C.vin FROM Car C,Service_Request S  WHERE C.vin = S.car_vin AND S.odometer < 50000  AND C.year < 1995);";
-        esql.executeQueryAndPrintResult(query);
+        browse(esql, carsBefore1995Pager());
         }catch(Exception e){
                 System.out.println(e);
         }
@@ -1183,21 +2439,53 @@ query = String.format("INSERT INTO Ownership (ownership_id, customer_id, car_vin
 	}
 	
 	public static void ListKCarsWithTheMostServices(MechanicShop esql){//9
-		//
-           		
+		int k;
+		while(true) {
+
+            System.out.println("Enter number of cars (K):");
+            try{
+                    k = Integer.parseInt(in.readLine());
+                    System.out.println(k);
+                    if(k > 0){
+                    break;
+                    }
+
+                    else{
+                    throw new Exception("K must be greater than 0");
+                    }
+
+            } catch(Exception e) {
+                System.out.println(e);
+                continue;
+            }
+        }
+
+		try{
+			System.out.println("Listing the " + k + " cars with the most service requests: ");
+			esql.printTopKCars(k);
+		}catch(Exception e){
+			System.out.println(e);
+		}
 	}
 	
 	public static void ListCustomersInDescendingOrderOfTheirTotalBill(MechanicShop esql){//9
 	String query = "";
 	try{	
-	query = "SELECT C.fname, C.lname FROM Customer C WHERE C.id IN SELECT S.customer_id, SUM(bill) FROM Service_Request S, Closed_Request CR WHERE S.rid = CR.rid GROUP BY S.customer_id ORDER BY SUM(bill) DESC;";
-
 	//query = "SELECT S.rid FROM Service_Request S WHERE S.customer_id = '123';";
-esql.executeQueryAndPrintResult(query);
+browse(esql, esql.totalBillPager());
 	}	
 catch(Exception e){
                 System.out.println(e);
         }
 	}
+
+	public static void RunAllReports(MechanicShop esql){//11
+		try{
+			System.out.println("Running reports 6-10 in parallel: ");
+			esql.runAllReports();
+		}catch(Exception e){
+			System.out.println(e);
+		}
+	}
 	
 }
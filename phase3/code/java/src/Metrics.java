@@ -0,0 +1,167 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class records the latency, row count and error count of database
+ * calls, keyed by the menu operation running on the calling thread and the
+ * data-access method called.  Latencies go into log2 histograms: bucket i
+ * holds calls of at most 2^(i+10) ns, from about 1 microsecond up to about
+ * 69 seconds, plus an overflow bucket.  Recording is lock-free; it takes a
+ * map lookup, an atomic increment and three LongAdder additions.
+ *
+ * The metrics are written in the Prometheus text exposition format.
+ *
+ */
+
+public class Metrics{
+	//log2 of the upper bound of the first bucket, in nanoseconds
+	static final int MIN_SHIFT = 10;
+	//bounded buckets; one more bucket holds everything slower
+	static final int BUCKETS = 27;
+	static final String PREFIX = "mechanicshop_db";
+
+	//the menu operation running on each thread
+	private static final ThreadLocal<String> OPERATION = ThreadLocal.withInitial(() -> "other");
+
+	private final ConcurrentHashMap<String, Histogram> _histograms = new ConcurrentHashMap<String, Histogram>();
+
+	/**
+	 * Method to tag the database calls made by this thread from now on with
+	 * a menu operation.
+	 */
+	public static void setOperation(String operation){
+		OPERATION.set(operation);
+	}
+
+	public static String operation(){
+		return OPERATION.get();
+	}
+
+	/**
+	 * The latency histogram and counters of one operation and method.
+	 */
+	static class Histogram{
+		final String operation;
+		final String method;
+		final AtomicLongArray buckets = new AtomicLongArray(BUCKETS + 1);
+		final LongAdder count = new LongAdder();
+		final LongAdder nanos = new LongAdder();
+		final LongAdder rows = new LongAdder();
+		final LongAdder errors = new LongAdder();
+
+		Histogram(String operation, String method){
+			this.operation = operation;
+			this.method = method;
+		}
+
+		void record(long elapsed){
+			int bucket = elapsed <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(elapsed - 1) - MIN_SHIFT;
+			this.buckets.incrementAndGet(Math.max(0, Math.min(bucket, BUCKETS)));
+			this.count.increment();
+			this.nanos.add(elapsed);
+		}
+	}
+
+	private Histogram histogram(String method){
+		String operation = OPERATION.get();
+		String key = operation + '\u0000' + method;
+		Histogram h = this._histograms.get(key);
+		if (h == null) h = this._histograms.computeIfAbsent(key, k -> new Histogram(operation, method));
+		return h;
+	}
+
+	/**
+	 * Method to record a call that succeeded.
+	 *
+	 * @param method the data-access method called
+	 * @param start System.nanoTime() when the call started
+	 * @param rows the rows returned or affected
+	 */
+	public void success(String method, long start, long rows){
+		Histogram h = histogram(method);
+		h.record(System.nanoTime() - start);
+		h.rows.add(rows);
+	}
+
+	/**
+	 * Method to record a call that failed.
+	 *
+	 * @param method the data-access method called
+	 * @param start System.nanoTime() when the call started
+	 */
+	public void failure(String method, long start){
+		Histogram h = histogram(method);
+		h.record(System.nanoTime() - start);
+		h.errors.increment();
+	}
+
+	/**
+	 * Method to write every histogram and counter in the Prometheus text
+	 * format.  Counts read while calls are being recorded may be off by the
+	 * calls in flight.
+	 *
+	 * @param out the stream to write to
+	 */
+	public void write(PrintStream out){
+		List<Histogram> all = new ArrayList<Histogram>(this._histograms.values());
+		Collections.sort(all, (a, b) -> a.operation.equals(b.operation)
+			? a.method.compareTo(b.method) : a.operation.compareTo(b.operation));
+
+		out.println("# HELP " + PREFIX + "_duration_seconds Latency of database calls.");
+		out.println("# TYPE " + PREFIX + "_duration_seconds histogram");
+		for (Histogram h : all){
+			String labels = labels(h);
+			long cumulative = 0;
+			for (int i = 0; i < BUCKETS; ++i){
+				cumulative += h.buckets.get(i);
+				out.println(PREFIX + "_duration_seconds_bucket{" + labels + ",le=\"" + (double) (1L << (i + MIN_SHIFT)) / 1e9 + "\"} " + cumulative);
+			}//end for
+			cumulative += h.buckets.get(BUCKETS);
+			out.println(PREFIX + "_duration_seconds_bucket{" + labels + ",le=\"+Inf\"} " + cumulative);
+			out.println(PREFIX + "_duration_seconds_sum{" + labels + "} " + h.nanos.sum() / 1e9);
+			out.println(PREFIX + "_duration_seconds_count{" + labels + "} " + h.count.sum());
+		}//end for
+
+		out.println("# HELP " + PREFIX + "_rows_total Rows returned or affected by database calls.");
+		out.println("# TYPE " + PREFIX + "_rows_total counter");
+		for (Histogram h : all)
+			out.println(PREFIX + "_rows_total{" + labels(h) + "} " + h.rows.sum());
+
+		out.println("# HELP " + PREFIX + "_errors_total Database calls that failed.");
+		out.println("# TYPE " + PREFIX + "_errors_total counter");
+		for (Histogram h : all)
+			out.println(PREFIX + "_errors_total{" + labels(h) + "} " + h.errors.sum());
+		out.flush();
+	}//end write
+
+	private static String labels(Histogram h){
+		return "operation=\"" + escape(h.operation) + "\",method=\"" + escape(h.method) + "\"";
+	}
+
+	/**
+	 * Method to escape a label value for the text format: backslash, double
+	 * quote and newline are written as \\, \" and \n.
+	 */
+	static String escape(String value){
+		StringBuilder sb = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); ++i){
+			char c = value.charAt(i);
+			switch (c){
+				case '\\': sb.append("\\\\"); break;
+				case '"': sb.append("\\\""); break;
+				case '\n': sb.append("\\n"); break;
+				default: sb.append(c);
+			}
+		}//end for
+		return sb.toString();
+	}
+
+	public boolean isEmpty(){
+		return this._histograms.isEmpty();
+	}
+}
@@ -0,0 +1,148 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class applies the numbered schema migrations in sql/migrations.  A
+ * migration is a file named NNN_description.sql; files are applied in
+ * version order, each in its own transaction, and the versions applied so
+ * far are recorded in the schema_migrations table so every migration runs
+ * exactly once per database.
+ *
+ */
+
+public class Migrator{
+	static final Pattern FILE_NAME = Pattern.compile("(\\d+)_(.+)\\.sql");
+
+	private final PrintStream _progress;
+
+	public Migrator(PrintStream progress){
+		this._progress = progress;
+	}
+
+	/**
+	 * A migration file and the version parsed from its name.
+	 */
+	public static class Migration{
+		public final int version;
+		public final String name;
+		public final File file;
+
+		Migration(int version, String name, File file){
+			this.version = version;
+			this.name = name;
+			this.file = file;
+		}
+	}
+
+	/**
+	 * Method to list the migrations in a directory, in version order.
+	 *
+	 * @param dir the migrations directory
+	 * @return the migrations found
+	 * @throws java.io.IOException when the directory cannot be read
+	 */
+	public static List<Migration> list(File dir) throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null) throw new IOException("Not a directory: " + dir);
+		List<Migration> migrations = new ArrayList<Migration>();
+		for (File f : files){
+			Matcher m = FILE_NAME.matcher(f.getName());
+			if (m.matches())
+				migrations.add(new Migration(Integer.parseInt(m.group(1)), m.group(2), f));
+		}//end for
+		migrations.sort((a, b) -> Integer.compare(a.version, b.version));
+		for (int i = 1; i < migrations.size(); ++i)
+			if (migrations.get(i).version == migrations.get(i - 1).version)
+				throw new IOException("Duplicate migration version " + migrations.get(i).version + " in " + dir);
+		return migrations;
+	}//end list
+
+	/**
+	 * Method to return the migrations in a directory that have not been
+	 * applied to the database yet.
+	 */
+	public List<Migration> pending(Connection connection, File dir) throws SQLException, IOException {
+		Set<Integer> applied = applied(connection);
+		List<Migration> pending = new ArrayList<Migration>();
+		for (Migration m : list(dir))
+			if (!applied.contains(m.version)) pending.add(m);
+		return pending;
+	}
+
+	/**
+	 * Method to apply every pending migration in a directory.
+	 *
+	 * @param connection the connection to migrate through
+	 * @param dir the migrations directory
+	 * @return the number of migrations applied
+	 * @throws java.sql.SQLException when a migration fails; it is rolled back
+	 * and the ones after it are not applied
+	 * @throws java.io.IOException when a migration cannot be read
+	 */
+	public int migrate(Connection connection, File dir) throws SQLException, IOException {
+		List<Migration> pending = pending(connection, dir);
+		boolean autoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		try{
+			for (Migration m : pending){
+				long start = System.nanoTime();
+				String sql = new String(Files.readAllBytes(m.file.toPath()), StandardCharsets.UTF_8);
+				try{
+					Statement stmt = connection.createStatement();
+					stmt.execute(sql);
+					stmt.close();
+					PreparedStatement record = connection.prepareStatement(
+						"INSERT INTO schema_migrations (version, name) VALUES (?, ?)");
+					record.setInt(1, m.version);
+					record.setString(2, m.name);
+					record.executeUpdate();
+					record.close();
+					connection.commit();
+				}catch (SQLException e){
+					connection.rollback();
+					throw new SQLException("Migration " + m.file.getName() + " failed: " + e.getMessage(), e);
+				}//end try
+				if (this._progress != null)
+					this._progress.println(String.format("Applied %s in %.2f s", m.file.getName(), (System.nanoTime() - start) / 1e9));
+			}//end for
+		}finally{
+			connection.setAutoCommit(autoCommit);
+		}
+		return pending.size();
+	}//end migrate
+
+	/*
+	 * creates the bookkeeping table if needed and returns the applied versions.
+	 */
+	private static Set<Integer> applied(Connection connection) throws SQLException {
+		Statement stmt = connection.createStatement();
+		try{
+			stmt.execute("CREATE TABLE IF NOT EXISTS schema_migrations (" +
+				"version INTEGER NOT NULL, " +
+				"name TEXT NOT NULL, " +
+				"applied_at TIMESTAMP NOT NULL DEFAULT now(), " +
+				"PRIMARY KEY (version))");
+			ResultSet rs = stmt.executeQuery("SELECT version FROM schema_migrations");
+			Set<Integer> versions = new HashSet<Integer>();
+			while (rs.next())
+				versions.add(rs.getInt(1));
+			return versions;
+		}finally{
+			stmt.close();
+		}
+	}
+}
@@ -0,0 +1,421 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class loads the phase3 CSV files like BulkLoader, but splits every
+ * file into byte ranges that end on line boundaries and streams each range
+ * over its own pooled connection, so large tables load on several backends
+ * at once.  Tables are loaded in stages, parents before children, so the
+ * foreign keys hold while every chunk of a stage is in flight:
+ *
+ *   Customer, Mechanic, Car  -&gt;  Owns, Service_Request  -&gt;  Closed_Request
+ *
+ * Around the load the secondary indexes of the tables are dropped and
+ * rebuilt, and their user triggers are disabled; the summary tables the
+ * triggers keep (sql/migrations 002 and 003) are rebuilt once at the end
+ * instead of row by row, which also keeps the chunks from contending for the
+ * same summary rows.
+ *
+ * Every chunk commits on its own, so a failed load leaves the chunks that
+ * finished before it in the tables.
+ *
+ */
+
+public class ParallelLoader{
+	//default bytes per chunk
+	static final long DEFAULT_CHUNK_SIZE = 16L << 20;
+
+	//the tables of BulkLoader.TABLES grouped into stages, parents first
+	static final List<List<String>> STAGES = Arrays.asList(
+		Arrays.asList("Customer", "Mechanic", "Car"),
+		Arrays.asList("Owns", "Service_Request"),
+		Arrays.asList("Closed_Request")
+	);
+
+	//summary tables kept by triggers and the statements that rebuild them,
+	//as in the backfills of sql/migrations
+	static final LinkedHashMap<String, String[]> SUMMARIES = new LinkedHashMap<String, String[]>();
+	static{
+		SUMMARIES.put("customer_bill_totals", new String[]{
+			"TRUNCATE customer_bill_totals",
+			"INSERT INTO customer_bill_totals (customer_id, total_bill, closed_count) " +
+				"SELECT S.customer_id, SUM(CR.bill), COUNT(*) FROM Service_Request S, Closed_Request CR " +
+				"WHERE S.rid = CR.rid GROUP BY S.customer_id",
+			"ANALYZE customer_bill_totals"});
+		SUMMARIES.put("car_service_counts", new String[]{
+			"TRUNCATE car_service_counts",
+			"INSERT INTO car_service_counts (car_vin, service_count) " +
+				"SELECT S.car_vin, COUNT(*) FROM Service_Request S GROUP BY S.car_vin",
+			"ANALYZE car_service_counts"});
+	}
+
+	private final ConnectionPool _pool;
+	private final int _threads;
+	private final long _chunkSize;
+	private final int _bufferSize;
+	private final PrintStream _progress;
+
+	public ParallelLoader(ConnectionPool pool, int threads, long chunkSize, int bufferSize, PrintStream progress){
+		if (threads < 1) throw new IllegalArgumentException("Invalid thread count: " + threads);
+		if (chunkSize < 1) throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+		this._pool = pool;
+		this._threads = threads;
+		this._chunkSize = chunkSize;
+		this._bufferSize = bufferSize;
+		this._progress = progress;
+	}
+
+	/**
+	 * A byte range of a CSV file holding whole lines.
+	 */
+	static class Chunk{
+		final BulkLoader.Table table;
+		final int tableIndex;
+		final File file;
+		final long start;
+		final long end;
+
+		Chunk(BulkLoader.Table table, int tableIndex, File file, long start, long end){
+			this.table = table;
+			this.tableIndex = tableIndex;
+			this.file = file;
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	/**
+	 * Method to load every table from the CSV files in a directory.
+	 *
+	 * @param dataDir the directory holding the CSV files
+	 * @return the total number of rows loaded
+	 * @throws java.sql.SQLException when a COPY or the index rebuild fails
+	 * @throws java.io.IOException when a file cannot be read
+	 */
+	public long loadAll(File dataDir) throws SQLException, IOException, InterruptedException {
+		long start = System.nanoTime();
+		List<BulkLoader.Table> tables = BulkLoader.TABLES;
+		for (BulkLoader.Table table : tables){
+			File f = new File(dataDir, table.file);
+			if (!f.isFile()) throw new IOException("Missing " + f);
+		}//end for
+
+		List<String> indexes;
+		ConnectionPool.PooledConnection pc = this._pool.borrow();
+		try{
+			// one transaction, so a failure here leaves every trigger and
+			// index as it was; release rolls back an uncommitted one
+			pc.connection().setAutoCommit(false);
+			setUserTriggers(pc.connection(), tables, false);
+			indexes = dropSecondaryIndexes(pc.connection(), tables);
+			pc.connection().commit();
+		}finally{
+			this._pool.release(pc);
+		}
+
+		ExecutorService workers = Executors.newFixedThreadPool(this._threads);
+		long rows = 0;
+		try{
+			AtomicLongArray tableRows = new AtomicLongArray(tables.size());
+			for (List<String> stage : STAGES){
+				long stageStart = System.nanoTime();
+				List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+				for (String name : stage){
+					int t = indexOf(tables, name);
+					for (final Chunk chunk : split(tables.get(t), t, new File(dataDir, tables.get(t).file)))
+						tasks.add(() -> {
+							long n = loadChunk(chunk);
+							tableRows.addAndGet(chunk.tableIndex, n);
+							return n;
+						});
+				}//end for
+				rows += runAll(workers, tasks);
+				for (String name : stage){
+					int t = indexOf(tables, name);
+					report(name, tableRows.get(t), new File(dataDir, tables.get(t).file).length(), System.nanoTime() - stageStart);
+				}//end for
+			}//end for
+		}finally{
+			// restore the indexes, triggers and summaries even after a failed load
+			try{
+				rebuildIndexes(workers, indexes);
+			}finally{
+				workers.shutdownNow();
+				pc = this._pool.borrow();
+				try{
+					setUserTriggers(pc.connection(), tables, true);
+					rebuildSummaries(pc.connection());
+				}finally{
+					this._pool.release(pc);
+				}
+			}
+		}
+
+		pc = this._pool.borrow();
+		try{
+			Statement stmt = pc.connection().createStatement();
+			try{
+				for (BulkLoader.Table table : tables){
+					BulkLoader.resyncSequence(pc.connection(), table);
+					stmt.execute("ANALYZE " + table.name);
+				}//end for
+			}finally{
+				stmt.close();
+			}
+		}finally{
+			this._pool.release(pc);
+		}
+		report("Total", rows, -1, System.nanoTime() - start);
+		return rows;
+	}//end loadAll
+
+	/**
+	 * Method to split a CSV file into byte ranges of about chunkSize bytes,
+	 * each ending just after a newline or at the end of the file.
+	 */
+	List<Chunk> split(BulkLoader.Table table, int tableIndex, File file) throws IOException {
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try{
+			long length = raf.length();
+			long start = 0;
+			byte[] buf = new byte[8192];
+			while (start < length){
+				long end = start + this._chunkSize;
+				if (end >= length){
+					end = length;
+				}else{
+					// move end past the next newline
+					raf.seek(end - 1);
+					boolean found = false;
+					int n;
+					while (!found && (n = raf.read(buf)) > 0){
+						for (int i = 0; i < n; ++i){
+							if (buf[i] == '\n'){
+								end += i;
+								found = true;
+								break;
+							}//end if
+						}//end for
+						if (!found) end += n;
+					}//end while
+					if (!found) end = length;
+				}//end if
+				chunks.add(new Chunk(table, tableIndex, file, start, end));
+				start = end;
+			}//end while
+		}finally{
+			raf.close();
+		}
+		return chunks;
+	}//end split
+
+	/*
+	 * rebuilds the dropped indexes on the workers, one index per backend.
+	 */
+	private void rebuildIndexes(ExecutorService workers, List<String> indexes) throws SQLException, IOException, InterruptedException {
+		long start = System.nanoTime();
+		List<Callable<Long>> rebuilds = new ArrayList<Callable<Long>>();
+		for (final String ddl : indexes)
+			rebuilds.add(() -> {
+				execute(ddl);
+				return 0L;
+			});
+		runAll(workers, rebuilds);
+		if (this._progress != null && !indexes.isEmpty())
+			this._progress.println(String.format("Rebuilt %d index(es) in %.2f s", indexes.size(), (System.nanoTime() - start) / 1e9));
+	}
+
+	private long loadChunk(Chunk chunk) throws SQLException, IOException {
+		FileChannel channel = FileChannel.open(chunk.file.toPath(), StandardOpenOption.READ);
+		ConnectionPool.PooledConnection pc = this._pool.borrow();
+		try{
+			InputStream in = new RangeInputStream(channel, chunk.start, chunk.end);
+			return new BulkLoader(this._bufferSize, null).load(pc.connection(), chunk.table, in, chunk.end - chunk.start);
+		}finally{
+			this._pool.release(pc);
+			channel.close();
+		}
+	}
+
+	/*
+	 * runs the tasks on the workers and waits for all of them, returning the
+	 * sum of their results; the first failure is rethrown after the others
+	 * have finished.
+	 */
+	private static long runAll(ExecutorService workers, List<Callable<Long>> tasks) throws SQLException, IOException, InterruptedException {
+		List<Future<Long>> futures = workers.invokeAll(tasks);
+		long sum = 0;
+		Throwable failure = null;
+		for (Future<Long> f : futures){
+			try{
+				sum += f.get();
+			}catch (ExecutionException e){
+				if (failure == null) failure = e.getCause();
+			}//end try
+		}//end for
+		if (failure instanceof SQLException) throw (SQLException) failure;
+		if (failure instanceof IOException) throw (IOException) failure;
+		if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+		if (failure != null) throw new SQLException(failure);
+		return sum;
+	}
+
+	private void execute(String sql) throws SQLException {
+		ConnectionPool.PooledConnection pc = this._pool.borrow();
+		try{
+			Statement stmt = pc.connection().createStatement();
+			try{
+				stmt.execute(sql);
+			}finally{
+				stmt.close();
+			}
+		}finally{
+			this._pool.release(pc);
+		}
+	}
+
+	/**
+	 * Method to drop the indexes of the tables that back neither a primary
+	 * key nor a unique constraint.
+	 *
+	 * @return the CREATE INDEX statements that rebuild them
+	 */
+	static List<String> dropSecondaryIndexes(Connection connection, List<BulkLoader.Table> tables) throws SQLException {
+		List<String> ddl = new ArrayList<String>();
+		List<String> names = new ArrayList<String>();
+		PreparedStatement stmt = connection.prepareStatement(
+			"SELECT i.indexrelid::regclass::text, pg_get_indexdef(i.indexrelid) FROM pg_index i " +
+			"WHERE i.indrelid = ?::regclass AND NOT i.indisprimary AND NOT i.indisunique");
+		try{
+			for (BulkLoader.Table table : tables){
+				stmt.setString(1, table.name.toLowerCase());
+				ResultSet rs = stmt.executeQuery();
+				while (rs.next()){
+					names.add(rs.getString(1));
+					ddl.add(rs.getString(2));
+				}//end while
+				rs.close();
+			}//end for
+		}finally{
+			stmt.close();
+		}
+		Statement drop = connection.createStatement();
+		try{
+			for (String name : names)
+				drop.execute("DROP INDEX " + name);
+		}finally{
+			drop.close();
+		}
+		return ddl;
+	}
+
+	/*
+	 * enables or disables the user (non foreign key) triggers of the tables.
+	 */
+	private static void setUserTriggers(Connection connection, List<BulkLoader.Table> tables, boolean enable) throws SQLException {
+		Statement stmt = connection.createStatement();
+		try{
+			for (BulkLoader.Table table : tables)
+				stmt.execute("ALTER TABLE " + table.name + (enable ? " ENABLE" : " DISABLE") + " TRIGGER USER");
+		}finally{
+			stmt.close();
+		}
+	}
+
+	/*
+	 * rebuilds the summary tables that exist in this database.
+	 */
+	private void rebuildSummaries(Connection connection) throws SQLException {
+		boolean autoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		PreparedStatement exists = connection.prepareStatement("SELECT to_regclass(?) IS NOT NULL");
+		Statement stmt = connection.createStatement();
+		try{
+			for (Map.Entry<String, String[]> summary : SUMMARIES.entrySet()){
+				exists.setString(1, summary.getKey());
+				ResultSet rs = exists.executeQuery();
+				boolean present = rs.next() && rs.getBoolean(1);
+				rs.close();
+				if (!present) continue;
+				long start = System.nanoTime();
+				for (String sql : summary.getValue())
+					stmt.execute(sql);
+				connection.commit();
+				if (this._progress != null)
+					this._progress.println(String.format("Rebuilt %s in %.2f s", summary.getKey(), (System.nanoTime() - start) / 1e9));
+			}//end for
+		}catch (SQLException e){
+			connection.rollback();
+			throw e;
+		}finally{
+			stmt.close();
+			exists.close();
+			connection.setAutoCommit(autoCommit);
+		}
+	}
+
+	private static int indexOf(List<BulkLoader.Table> tables, String name){
+		for (int i = 0; i < tables.size(); ++i)
+			if (tables.get(i).name.equals(name)) return i;
+		throw new IllegalArgumentException("Unknown table " + name);
+	}
+
+	private void report(String table, long rows, long bytes, long nanos){
+		if (this._progress == null) return;
+		double seconds = Math.max(nanos / 1e9, 1e-9);
+		String size = bytes >= 0 ? String.format(", %.1f MB, %.1f MB/s", bytes / 1048576.0, bytes / 1048576.0 / seconds) : "";
+		this._progress.println(String.format("%s: %d rows in %.2f s, %.0f rows/s%s",
+			table, rows, seconds, rows / seconds, size));
+	}
+
+	/*
+	 * reads the bytes [start, end) of a file with positional reads.
+	 */
+	static class RangeInputStream extends InputStream{
+		private final FileChannel _channel;
+		private long _position;
+		private final long _end;
+
+		RangeInputStream(FileChannel channel, long start, long end){
+			this._channel = channel;
+			this._position = start;
+			this._end = end;
+		}
+
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) <= 0 ? -1 : b[0] & 0xff;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (this._position >= this._end) return -1;
+			int n = (int) Math.min(len, this._end - this._position);
+			n = this._channel.read(ByteBuffer.wrap(b, off, n), this._position);
+			if (n > 0) this._position += n;
+			return n;
+		}
+	}
+}
@@ -0,0 +1,277 @@
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * This class iterates over the rows of a query lazily.  The query runs in a
+ * read-only transaction on a pooled connection held by the cursor, and the
+ * driver fetches its rows through a server-side cursor fetchSize at a time,
+ * so only one batch of rows is in memory however large the result is.
+ *
+ * The connection goes back to the pool, which ends the transaction and the
+ * server-side cursor, as soon as the last row has been read, the cursor is
+ * closed or a stream over it is closed, whichever comes first.  A caller
+ * that stops early must close the cursor, best with try-with-resources.
+ *
+ * A cursor can be iterated once and is used by one thread at a time.
+ * SQLExceptions raised while iterating are wrapped in a
+ * QueryCursor.CursorException.
+ *
+ */
+
+public class QueryCursor implements Iterable<QueryCursor.Row>, AutoCloseable{
+	/**
+	 * One row of the result.  The values are copied out of the result set,
+	 * so a row stays valid after the cursor has moved on.
+	 */
+	public static class Row{
+		private final List<String> _header;
+		private final Map<String, Integer> _columns;
+		private final String[] _values;
+
+		Row(List<String> header, Map<String, Integer> columns, String[] values){
+			this._header = header;
+			this._columns = columns;
+			this._values = values;
+		}
+
+		public int size(){
+			return this._values.length;
+		}
+
+		/**
+		 * Method to return the value of a column, counted from 0, or null
+		 * for SQL NULL.
+		 */
+		public String get(int column){
+			return this._values[column];
+		}
+
+		/**
+		 * Method to return the value of a column by its (lower case) name.
+		 */
+		public String get(String column){
+			Integer i = this._columns.get(column.toLowerCase());
+			if (i == null) throw new IllegalArgumentException("No column " + column + " in " + this._header);
+			return this._values[i];
+		}
+
+		public List<String> header(){
+			return this._header;
+		}
+
+		/**
+		 * Method to return the values as a record, like the rows of
+		 * executeQueryAndReturnResult.
+		 */
+		public List<String> values(){
+			return Arrays.asList(this._values.clone());
+		}
+
+		public String toString(){
+			return Arrays.toString(this._values);
+		}
+	}
+
+	/**
+	 * An SQLException raised while iterating, where Iterator methods cannot
+	 * throw it.
+	 */
+	public static class CursorException extends RuntimeException{
+		private static final long serialVersionUID = 1L;
+
+		CursorException(SQLException cause){
+			super(cause.getMessage(), cause);
+		}
+
+		public SQLException getCause(){
+			return (SQLException) super.getCause();
+		}
+	}
+
+	private final ConnectionPool _pool;
+	private ConnectionPool.PooledConnection _pc;
+	private final Metrics _metrics;
+	private final long _start;
+	private final ResultSet _rs;
+	private final List<String> _header;
+	private final Map<String, Integer> _columns = new HashMap<String, Integer>();
+	//set when the row under the result set has been read by hasNext
+	private boolean _ahead = false;
+	private boolean _iterated = false;
+	private long _rows = 0;
+
+	/**
+	 * Method to run a query and open a cursor over its rows.  The connection
+	 * is released again when the query fails.
+	 *
+	 * @param pool the pool to borrow the connection from
+	 * @param metrics where the call is recorded when the cursor closes, or null
+	 * @param query the query with ? placeholders
+	 * @param fetchSize the number of rows fetched per round trip
+	 * @param params the values bound to the placeholders, in order
+	 * @throws java.sql.SQLException when the query fails
+	 */
+	QueryCursor(ConnectionPool pool, Metrics metrics, String query, int fetchSize, Object... params) throws SQLException {
+		this._pool = pool;
+		this._metrics = metrics;
+		this._start = System.nanoTime();
+		this._pc = pool.borrow();
+		try{
+			//read-only is set before the transaction starts; the driver
+			//only uses a cursor inside a transaction
+			this._pc.connection().setReadOnly(true);
+			this._pc.connection().setAutoCommit(false);
+			PreparedStatement stmt = this._pc.statements().prepare(query);
+			stmt.setFetchSize(fetchSize);
+			stmt.clearParameters();
+			for (int i = 0; i < params.length; ++i)
+				stmt.setObject(i + 1, params[i]);
+			this._rs = stmt.executeQuery();
+			ResultSetMetaData rsmd = this._rs.getMetaData();
+			List<String> header = new ArrayList<String>(rsmd.getColumnCount());
+			for (int i = 1; i <= rsmd.getColumnCount(); ++i){
+				header.add(rsmd.getColumnName(i));
+				this._columns.put(rsmd.getColumnName(i).toLowerCase(), i - 1);
+			}//end for
+			this._header = Collections.unmodifiableList(header);
+		}catch (SQLException | RuntimeException e){
+			if (metrics != null) metrics.failure("queryCursor", this._start);
+			endTransaction(this._pc);
+			pool.release(this._pc);
+			this._pc = null;
+			throw e;
+		}//end try
+	}
+
+	public List<String> header(){
+		return this._header;
+	}
+
+	/**
+	 * Method to return the number of rows read so far.
+	 */
+	public long rows(){
+		return this._rows;
+	}
+
+	public boolean isClosed(){
+		return this._pc == null;
+	}
+
+	/**
+	 * Method to return the iterator over the rows; a cursor has only one.
+	 */
+	public Iterator<Row> iterator(){
+		if (this._iterated) throw new IllegalStateException("A query cursor can only be iterated once");
+		this._iterated = true;
+		return new Iterator<Row>(){
+			public boolean hasNext(){
+				return advance();
+			}
+
+			public Row next(){
+				if (!advance()) throw new NoSuchElementException();
+				QueryCursor.this._ahead = false;
+				++QueryCursor.this._rows;
+				return read();
+			}
+		};
+	}
+
+	/**
+	 * Method to return a sequential stream over the rows.  Closing the
+	 * stream closes the cursor.
+	 */
+	public Stream<Row> stream(){
+		Spliterator<Row> rows = Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(rows, false).onClose(this::close);
+	}
+
+	/*
+	 * moves to the next row unless already there; closes the cursor after
+	 * the last row.
+	 */
+	private boolean advance(){
+		if (this._ahead) return true;
+		if (this._pc == null) return false;
+		try{
+			this._ahead = this._rs.next();
+		}catch (SQLException e){
+			fail();
+			throw new CursorException(e);
+		}//end try
+		if (!this._ahead) close();
+		return this._ahead;
+	}
+
+	private Row read(){
+		try{
+			String[] values = new String[this._header.size()];
+			for (int i = 0; i < values.length; ++i)
+				values[i] = this._rs.getString(i + 1);
+			return new Row(this._header, this._columns, values);
+		}catch (SQLException e){
+			fail();
+			throw new CursorException(e);
+		}//end try
+	}
+
+	/*
+	 * gives the connection back after an error.
+	 */
+	private void fail(){
+		if (this._pc == null) return;
+		if (this._metrics != null) this._metrics.failure("queryCursor", this._start);
+		release();
+	}
+
+	/**
+	 * Method to close the result set and give the connection back to the
+	 * pool, which ends the server-side cursor.  Closing twice does nothing.
+	 */
+	public void close(){
+		if (this._pc == null) return;
+		if (this._metrics != null) this._metrics.success("queryCursor", this._start, this._rows);
+		release();
+	}
+
+	private void release(){
+		try{
+			this._rs.close();
+		}catch (SQLException e){
+			// ignored.
+		}//end try
+		endTransaction(this._pc);
+		this._pool.release(this._pc);
+		this._pc = null;
+		this._ahead = false;
+	}
+
+	/*
+	 * rolls the read-only transaction back and makes the connection
+	 * writable again before it goes back to the pool; a connection that
+	 * cannot be reset is closed, so the pool drops it.
+	 */
+	private static void endTransaction(ConnectionPool.PooledConnection pc){
+		try{
+			pc.connection().rollback();
+			pc.connection().setReadOnly(false);
+		}catch (SQLException e){
+			pc.close();
+		}//end try
+	}
+}
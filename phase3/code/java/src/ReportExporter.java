@@ -0,0 +1,73 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * This class exports the result of a query by wrapping it in COPY (query)
+ * TO STDOUT and writing the bytes the server sends straight to a stream.
+ * The server formats every row, so nothing is converted to Java strings on
+ * the client and an export runs at the speed of the connection and the
+ * disk.
+ *
+ * CSV is written with a header line.  JSON lines are built by row_to_json on
+ * the server, one object per line; they are copied in the CSV format with a
+ * quote and delimiter that JSON text never contains unescaped, so the
+ * objects arrive without any COPY quoting or escaping.
+ *
+ */
+
+public class ReportExporter{
+	public enum Format { CSV, JSON }
+
+	//default size of the buffer in front of the output stream
+	static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	private final int _bufferSize;
+
+	public ReportExporter(int bufferSize){
+		this._bufferSize = bufferSize;
+	}
+
+	/**
+	 * Method to return the COPY statement exporting query in format.
+	 *
+	 * @param query a SELECT, with or without a trailing semicolon
+	 */
+	public static String copySql(String query, Format format){
+		String q = query.trim();
+		while (q.endsWith(";"))
+			q = q.substring(0, q.length() - 1).trim();
+		switch (format){
+			case JSON:
+				return "COPY (SELECT row_to_json(r) FROM (" + q + ") r) TO STDOUT"
+					+ " WITH (FORMAT csv, QUOTE e'\\x01', DELIMITER e'\\x02')";
+			default:
+				return "COPY (" + q + ") TO STDOUT WITH (FORMAT csv, HEADER)";
+		}
+	}
+
+	/**
+	 * Method to export the result of a query to a stream.  The stream is
+	 * flushed but not closed.
+	 *
+	 * @param connection the connection to query through
+	 * @param query the SELECT to export
+	 * @param format the output format
+	 * @param out where the rows are written
+	 * @return the number of rows exported
+	 * @throws java.sql.SQLException when the query fails
+	 * @throws java.io.IOException when the output cannot be written
+	 */
+	public long export(Connection connection, String query, Format format, OutputStream out) throws SQLException, IOException {
+		CopyManager copy = connection.unwrap(PGConnection.class).getCopyAPI();
+		BufferedOutputStream buffered = new BufferedOutputStream(out, this._bufferSize);
+		long rows = copy.copyOut(copySql(query, format), buffered);
+		buffered.flush();
+		return rows;
+	}
+}
@@ -0,0 +1,292 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class runs the front desk operations headlessly from a stream of
+ * JSON lines, one command per line:
+ *
+ *   {"op": "add-customer", "fname": "Ann", "lname": "Lee", "phone": "(951)555-0100", "address": "1 Main St"}
+ *   {"op": "add-mechanic", "fname": "Bo", "lname": "Kim", "experience": 4}
+ *   {"op": "add-car", "vin": "ABCDEF0123456789", "make": "Toyota", "model": "Prius", "year": 2012}
+ *   {"op": "insert-service-request", "customer_id": 7, "car_vin": "ABCDEF0123456789", "date": "2020-07-01", "odometer": 42000, "complain": "Noisy brakes"}
+ *   {"op": "close-request", "rid": 30001, "mid": 12, "date": "2020-07-03", "comment": "Replaced pads", "bill": 180}
+ *
+ * An omitted id, mechanic id, rid or wid is allocated from its sequence.
+ * Service requests are opened and closed by the same statements as the
+ * menu, so an insert-service-request also records the ownership and a
+ * close-request goes through the checks of the close_request function.
+ * Commands are queued on a BatchInserter and committed transactionSize at a
+ * time, so a script runs at batch speed rather than one round trip per
+ * field.  The first failing command stops the script, reported at the line
+ * that queued it: its transaction is rolled back and the transactions
+ * committed before it are kept.  Blank lines and lines starting with # are
+ * skipped.
+ *
+ */
+
+public class ScriptRunner{
+	private final MechanicShop _esql;
+	private final int _transactionSize;
+	private final int _batchSize;
+	//commands run per op, in first-use order
+	private final LinkedHashMap<String, Long> _counts = new LinkedHashMap<String, Long>();
+	private long _commands = 0;
+	private long _transactions = 0;
+
+	public ScriptRunner(MechanicShop esql, int transactionSize, int batchSize){
+		if (transactionSize < 1) throw new IllegalArgumentException("Invalid transaction size: " + transactionSize);
+		this._esql = esql;
+		this._transactionSize = transactionSize;
+		this._batchSize = batchSize;
+	}
+
+	/**
+	 * Method to run every command of a script.
+	 *
+	 * @param reader the script, JSON lines
+	 * @param source the name of the script, for error messages
+	 * @return the number of commands committed
+	 * @throws java.sql.SQLException when a command fails
+	 * @throws java.io.IOException when the script cannot be read
+	 */
+	public long run(BufferedReader reader, String source) throws SQLException, IOException {
+		BatchInserter batch = this._esql.openBatch(this._batchSize);
+		try{
+			// a close-request may come before the first insert-service-request
+			batch.flushOrder(MechanicShop.INSERT_CUSTOMER, MechanicShop.INSERT_MECHANIC, MechanicShop.INSERT_CAR,
+				MechanicShop.OPEN_SERVICE_REQUEST, MechanicShop.CLOSE_REQUEST);
+			LinkedHashMap<String, Long> uncommitted = new LinkedHashMap<String, Long>();
+			String line;
+			int lineNo = 0;
+			int pending = 0;
+			while ((line = reader.readLine()) != null){
+				++lineNo;
+				String trimmed = line.trim();
+				if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+				String op;
+				// a failed batch names the line that queued the failing row
+				batch.tag(source + ":" + lineNo);
+				try{
+					Map<String, Object> command = parse(trimmed);
+					op = run(batch, command);
+				}catch (RuntimeException e){
+					throw new SQLException(source + ":" + lineNo + ": " + e.getMessage(), e);
+				}//end try
+				Long n = uncommitted.get(op);
+				uncommitted.put(op, n == null ? 1 : n + 1);
+				if (++pending == this._transactionSize){
+					commit(batch, uncommitted, source + ":" + lineNo);
+					pending = 0;
+				}//end if
+			}//end while
+			if (pending > 0) commit(batch, uncommitted, source + ":" + lineNo);
+			return this._commands;
+		}finally{
+			batch.close();
+		}
+	}//end run
+
+	private void commit(BatchInserter batch, Map<String, Long> uncommitted, String where) throws SQLException {
+		try{
+			batch.commit();
+		}catch (SQLException e){
+			throw new SQLException("transaction ending at " + where + ": " + e.getMessage(), e);
+		}//end try
+		for (Map.Entry<String, Long> e : uncommitted.entrySet()){
+			Long n = this._counts.get(e.getKey());
+			this._counts.put(e.getKey(), n == null ? e.getValue() : n + e.getValue());
+			this._commands += e.getValue();
+		}//end for
+		uncommitted.clear();
+		++this._transactions;
+	}
+
+	/*
+	 * queues one command and returns its op.
+	 */
+	private static String run(BatchInserter batch, Map<String, Object> c) throws SQLException {
+		String op = text(c, "op");
+		switch (op){
+			case "add-customer":
+				if (c.get("id") == null) batch.addCustomer(text(c, "fname"), text(c, "lname"), text(c, "phone"), text(c, "address"));
+				else batch.addCustomer(integer(c, "id"), text(c, "fname"), text(c, "lname"), text(c, "phone"), text(c, "address"));
+				break;
+			case "add-mechanic":
+				if (c.get("id") == null) batch.addMechanic(text(c, "fname"), text(c, "lname"), integer(c, "experience"));
+				else batch.addMechanic(integer(c, "id"), text(c, "fname"), text(c, "lname"), integer(c, "experience"));
+				break;
+			case "add-car":
+				batch.addCar(text(c, "vin"), text(c, "make"), text(c, "model"), integer(c, "year"));
+				break;
+			case "insert-service-request":
+				if (c.get("rid") == null)
+					batch.openServiceRequest(integer(c, "customer_id"), text(c, "car_vin"), date(c, "date"), integer(c, "odometer"), optional(c, "complain"));
+				else
+					batch.openServiceRequest(integer(c, "rid"), integer(c, "customer_id"), text(c, "car_vin"), date(c, "date"), integer(c, "odometer"), optional(c, "complain"));
+				break;
+			case "close-request":
+				if (c.get("wid") == null)
+					batch.closeRequest(integer(c, "rid"), integer(c, "mid"), date(c, "date"), optional(c, "comment"), integer(c, "bill"));
+				else
+					batch.closeRequest(integer(c, "wid"), integer(c, "rid"), integer(c, "mid"), date(c, "date"), optional(c, "comment"), integer(c, "bill"));
+				break;
+			default:
+				throw new IllegalArgumentException("unknown op " + op);
+		}
+		return op;
+	}//end run
+
+	private static String text(Map<String, Object> c, String key){
+		Object v = c.get(key);
+		if (v == null) throw new IllegalArgumentException("missing " + key);
+		return v.toString();
+	}
+
+	private static String optional(Map<String, Object> c, String key){
+		Object v = c.get(key);
+		return v == null ? null : v.toString();
+	}
+
+	private static int integer(Map<String, Object> c, String key){
+		Object v = c.get(key);
+		if (v == null) throw new IllegalArgumentException("missing " + key);
+		// parse gives Longs for integral numbers only, so a Double is a fraction
+		if (v instanceof Long){
+			long l = (Long) v;
+			if (l < Integer.MIN_VALUE || l > Integer.MAX_VALUE) throw new IllegalArgumentException(key + " is out of range: " + l);
+			return (int) l;
+		}//end if
+		if (v instanceof Number) throw new IllegalArgumentException(key + " must be an integer: " + v);
+		try{
+			return Integer.parseInt(v.toString().trim());
+		}catch (NumberFormatException e){
+			throw new IllegalArgumentException(key + " must be an integer: " + v);
+		}//end try
+	}
+
+	private static Date date(Map<String, Object> c, String key){
+		return Date.valueOf(text(c, key).trim());
+	}
+
+	/**
+	 * Method to print the commands run per op and the throughput.
+	 *
+	 * @param out the stream to print to
+	 * @param elapsedNanos the time the script took
+	 */
+	public void printSummary(PrintStream out, long elapsedNanos){
+		double seconds = elapsedNanos / 1e9;
+		for (Map.Entry<String, Long> e : this._counts.entrySet())
+			out.println(String.format("%-24s %10d", e.getKey(), e.getValue()));
+		out.println(String.format("Ran %d command(s) in %d transaction(s) in %.2f s, %.0f commands/s",
+			this._commands, this._transactions, seconds, this._commands / Math.max(seconds, 1e-9)));
+	}
+
+	/**
+	 * Method to parse one flat JSON object whose values are strings,
+	 * numbers, booleans or null.  Integral numbers become Longs and others
+	 * Doubles.
+	 *
+	 * @param json the object text
+	 * @return the members, in order
+	 */
+	static Map<String, Object> parse(String json){
+		LinkedHashMap<String, Object> members = new LinkedHashMap<String, Object>();
+		int[] pos = {skip(json, 0)};
+		expect(json, pos, '{');
+		if (peek(json, pos) == '}'){
+			++pos[0];
+		}else{
+			while (true){
+				if (peek(json, pos) != '"') throw new IllegalArgumentException("expected a member name at column " + (pos[0] + 1));
+				String key = string(json, pos);
+				expect(json, pos, ':');
+				members.put(key, value(json, pos));
+				char c = peek(json, pos);
+				++pos[0];
+				if (c == '}') break;
+				if (c != ',') throw new IllegalArgumentException("expected , or } at column " + pos[0]);
+			}//end while
+		}//end if
+		if (skip(json, pos[0]) != json.length()) throw new IllegalArgumentException("unexpected text after the object");
+		return members;
+	}//end parse
+
+	private static Object value(String json, int[] pos){
+		char c = peek(json, pos);
+		if (c == '"') return string(json, pos);
+		int start = pos[0];
+		while (pos[0] < json.length() && ",}] \t".indexOf(json.charAt(pos[0])) < 0)
+			++pos[0];
+		String token = json.substring(start, pos[0]);
+		switch (token){
+			case "null": return null;
+			case "true": return Boolean.TRUE;
+			case "false": return Boolean.FALSE;
+			case "": throw new IllegalArgumentException("expected a value at column " + (start + 1));
+		}
+		if (c == '{' || c == '[') throw new IllegalArgumentException("nested values are not supported, column " + (start + 1));
+		try{
+			if (token.indexOf('.') < 0 && token.indexOf('e') < 0 && token.indexOf('E') < 0) return Long.parseLong(token);
+			return Double.parseDouble(token);
+		}catch (NumberFormatException e){
+			throw new IllegalArgumentException("invalid value " + token + " at column " + (start + 1));
+		}//end try
+	}
+
+	private static String string(String json, int[] pos){
+		StringBuilder sb = new StringBuilder();
+		int i = pos[0] + 1;
+		while (true){
+			if (i >= json.length()) throw new IllegalArgumentException("unterminated string");
+			char c = json.charAt(i++);
+			if (c == '"') break;
+			if (c != '\\'){
+				sb.append(c);
+				continue;
+			}//end if
+			if (i >= json.length()) throw new IllegalArgumentException("unterminated string");
+			char e = json.charAt(i++);
+			switch (e){
+				case '"': case '\\': case '/': sb.append(e); break;
+				case 'b': sb.append('\b'); break;
+				case 'f': sb.append('\f'); break;
+				case 'n': sb.append('\n'); break;
+				case 'r': sb.append('\r'); break;
+				case 't': sb.append('\t'); break;
+				case 'u':
+					if (i + 4 > json.length()) throw new IllegalArgumentException("invalid escape at column " + i);
+					sb.append((char) Integer.parseInt(json.substring(i, i + 4), 16));
+					i += 4;
+					break;
+				default: throw new IllegalArgumentException("invalid escape at column " + i);
+			}
+		}//end while
+		pos[0] = i;
+		return sb.toString();
+	}
+
+	private static void expect(String json, int[] pos, char c){
+		if (peek(json, pos) != c) throw new IllegalArgumentException("expected " + c + " at column " + (pos[0] + 1));
+		++pos[0];
+	}
+
+	/*
+	 * skips whitespace and returns the next character, or 0 at the end.
+	 */
+	private static char peek(String json, int[] pos){
+		pos[0] = skip(json, pos[0]);
+		return pos[0] < json.length() ? json.charAt(pos[0]) : 0;
+	}
+
+	private static int skip(String json, int i){
+		while (i < json.length() && Character.isWhitespace(json.charAt(i)))
+			++i;
+		return i;
+	}
+}
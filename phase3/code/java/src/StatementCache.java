@@ -0,0 +1,80 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.postgresql.PGStatement;
+
+/**
+ * This class keeps a bounded, least-recently-used set of prepared statements
+ * for a single physical connection, keyed by their SQL text.  Statements are
+ * switched to a server-side prepare once they have been executed
+ * prepareThreshold times, so hot statements are parsed and planned only once.
+ *
+ */
+
+public class StatementCache{
+	//connection every cached statement belongs to
+	private final Connection _connection;
+	private final int _prepareThreshold;
+	private final LinkedHashMap<String, PreparedStatement> _statements;
+
+	public StatementCache(Connection connection, final int capacity, int prepareThreshold){
+		this._connection = connection;
+		this._prepareThreshold = prepareThreshold;
+		// access-ordered so the eldest entry is the least recently used one
+		this._statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true){
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest){
+				if (size() <= capacity) return false;
+				closeQuietly(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Method to fetch the prepared statement for the given SQL text, preparing
+	 * it on the connection the first time it is seen.  The returned statement
+	 * is owned by the cache and must not be closed by the caller.
+	 *
+	 * @param sql the parameterized SQL string
+	 * @return the cached prepared statement
+	 * @throws java.sql.SQLException when the statement cannot be prepared
+	 */
+	public synchronized PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement stmt = this._statements.get(sql);
+		if (stmt != null && !stmt.isClosed()) return stmt;
+
+		stmt = this._connection.prepareStatement(sql);
+		if (stmt.isWrapperFor(PGStatement.class)){
+			stmt.unwrap(PGStatement.class).setPrepareThreshold(this._prepareThreshold);
+		}//end if
+		this._statements.put(sql, stmt);
+		return stmt;
+	}//end prepare
+
+	/**
+	 * Method to return the number of statements currently cached.
+	 */
+	public synchronized int size(){
+		return this._statements.size();
+	}
+
+	/**
+	 * Method to close every cached statement.
+	 */
+	public synchronized void close(){
+		for (PreparedStatement stmt : this._statements.values())
+			closeQuietly(stmt);
+		this._statements.clear();
+	}//end close
+
+	private static void closeQuietly(PreparedStatement stmt){
+		try{
+			stmt.close();
+		}catch (SQLException e){
+			// ignored.
+		}//end try
+	}
+}
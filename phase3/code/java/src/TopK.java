@@ -0,0 +1,144 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class keeps the k items with the highest scores seen so far in a
+ * bounded binary min-heap, so a stream of n rows is reduced to its top k in
+ * O(n log k) time and O(k) memory without sorting the whole stream.  Scores
+ * are kept in a primitive array next to the items.  The arrays grow as items
+ * arrive, so a k far larger than the stream costs no more than the stream.
+ *
+ * Items with equal scores are ranked by an optional tie breaker, the item
+ * that compares lower ranking higher, so the top k of a stream does not
+ * depend on the order of its ties.
+ *
+ */
+
+public class TopK<T>{
+	//initial capacity of the heap arrays
+	static final int INITIAL_CAPACITY = 16;
+
+	private final int _k;
+	private final Comparator<? super T> _tieBreak;
+	private long[] _scores;
+	private Object[] _items;
+	private int _size = 0;
+
+	public TopK(int k){
+		this(k, null);
+	}
+
+	/**
+	 * @param k the number of items to keep
+	 * @param tieBreak ranks items with equal scores, lower first, or null
+	 */
+	public TopK(int k, Comparator<? super T> tieBreak){
+		if (k < 1) throw new IllegalArgumentException("Invalid k: " + k);
+		this._k = k;
+		this._tieBreak = tieBreak;
+		this._scores = new long[Math.min(k, INITIAL_CAPACITY)];
+		this._items = new Object[this._scores.length];
+	}
+
+	/**
+	 * Method to return the lowest score an item needs to enter the top k,
+	 * or Long.MIN_VALUE while fewer than k items have been offered.  An item
+	 * scoring exactly the threshold only enters when it wins the tie break.
+	 */
+	public long threshold(){
+		return this._size < this._k ? Long.MIN_VALUE : this._scores[0];
+	}
+
+	/**
+	 * Method to offer an item.  It is kept if fewer than k items are held or
+	 * its score beats the lowest score held.
+	 *
+	 * @return true when the item was kept
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean offer(long score, T item){
+		if (this._size < this._k){
+			if (this._size == this._scores.length){
+				int capacity = (int) Math.min((long) this._k, this._size * 2L);
+				this._scores = Arrays.copyOf(this._scores, capacity);
+				this._items = Arrays.copyOf(this._items, capacity);
+			}//end if
+			this._scores[this._size] = score;
+			this._items[this._size] = item;
+			siftUp(this._size++);
+			return true;
+		}//end if
+		if (score < this._scores[0]) return false;
+		if (score == this._scores[0] && (this._tieBreak == null || this._tieBreak.compare(item, (T) this._items[0]) >= 0)) return false;
+		this._scores[0] = score;
+		this._items[0] = item;
+		siftDown(0);
+		return true;
+	}//end offer
+
+	public int size(){
+		return this._size;
+	}
+
+	/**
+	 * Method to remove every item held, highest score first.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> drainDescending(){
+		int n = this._size;
+		Object[] out = new Object[n];
+		// popping the min-heap yields ascending order, so fill from the back
+		for (int i = n - 1; i >= 0; --i){
+			out[i] = this._items[0];
+			--this._size;
+			this._scores[0] = this._scores[this._size];
+			this._items[0] = this._items[this._size];
+			this._items[this._size] = null;
+			siftDown(0);
+		}//end for
+		List<T> result = new ArrayList<T>(n);
+		for (Object o : out)
+			result.add((T) o);
+		return result;
+	}//end drainDescending
+
+	private void siftUp(int i){
+		while (i > 0){
+			int parent = (i - 1) >>> 1;
+			if (!lower(i, parent)) break;
+			swap(i, parent);
+			i = parent;
+		}//end while
+	}
+
+	private void siftDown(int i){
+		while (true){
+			int left = 2 * i + 1;
+			if (left >= this._size) break;
+			int smallest = left + 1 < this._size && lower(left + 1, left) ? left + 1 : left;
+			if (!lower(smallest, i)) break;
+			swap(i, smallest);
+			i = smallest;
+		}//end while
+	}
+
+	/*
+	 * true when the item at a ranks strictly below the item at b.
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean lower(int a, int b){
+		if (this._scores[a] != this._scores[b]) return this._scores[a] < this._scores[b];
+		return this._tieBreak != null && this._tieBreak.compare((T) this._items[a], (T) this._items[b]) > 0;
+	}
+
+	private void swap(int a, int b){
+		long s = this._scores[a];
+		this._scores[a] = this._scores[b];
+		this._scores[b] = s;
+		Object o = this._items[a];
+		this._items[a] = this._items[b];
+		this._items[b] = o;
+	}
+}
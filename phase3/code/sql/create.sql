@@ -4,6 +4,15 @@ DROP TABLE IF EXISTS Car CASCADE;--OK
 DROP TABLE IF EXISTS Owns CASCADE;--OK
 DROP TABLE IF EXISTS Service_Request CASCADE;--OK
 DROP TABLE IF EXISTS Closed_Request CASCADE;--OK
+-- the migration bookkeeping and the summary tables kept by the migrations,
+-- so migrate re-applies every migration to the fresh tables
+DROP TABLE IF EXISTS schema_migrations, customer_bill_totals, car_service_counts CASCADE;--OK
+
+DROP SEQUENCE IF EXISTS customer_id_seq;--OK
+DROP SEQUENCE IF EXISTS mechanic_id_seq;--OK
+DROP SEQUENCE IF EXISTS owns_ownership_id_seq;--OK
+DROP SEQUENCE IF EXISTS service_request_rid_seq;--OK
+DROP SEQUENCE IF EXISTS closed_request_wid_seq;--OK
 
 
 -------------
@@ -18,6 +27,18 @@ CREATE DOMAIN _PZEROINTEGER AS int4 CHECK(VALUE >= 0);
 CREATE DOMAIN _YEARS AS int4 CHECK(VALUE >= 0 AND VALUE < 100);
 CREATE DOMAIN _YEAR AS int4 CHECK(VALUE >= 1970);
 
+---------------
+---SEQUENCES---
+---------------
+-- Each nextval hands out a block of 100 ids, which MechanicShop then
+-- assigns one by one without going back to the server. The increment
+-- must match IdAllocator.BLOCK_SIZE.
+CREATE SEQUENCE customer_id_seq INCREMENT BY 100 CACHE 1;
+CREATE SEQUENCE mechanic_id_seq INCREMENT BY 100 CACHE 1;
+CREATE SEQUENCE owns_ownership_id_seq INCREMENT BY 100 CACHE 1;
+CREATE SEQUENCE service_request_rid_seq INCREMENT BY 100 CACHE 1;
+CREATE SEQUENCE closed_request_wid_seq INCREMENT BY 100 CACHE 1;
+
 ------------
 ---TABLES---
 ------------
@@ -147,4 +168,13 @@ COPY Closed_Request (
 	bill
 )
 FROM 'closed_request.csv'
-WITH DELIMITER ',';
\ No newline at end of file
+WITH DELIMITER ',';
+
+----------------------------------------
+-- MOVE SEQUENCES PAST THE LOADED IDS --
+----------------------------------------
+SELECT setval('customer_id_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM Customer), false);
+SELECT setval('mechanic_id_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM Mechanic), false);
+SELECT setval('owns_ownership_id_seq', (SELECT COALESCE(MAX(ownership_id), 0) + 1 FROM Owns), false);
+SELECT setval('service_request_rid_seq', (SELECT COALESCE(MAX(rid), 0) + 1 FROM Service_Request), false);
+SELECT setval('closed_request_wid_seq', (SELECT COALESCE(MAX(wid), 0) + 1 FROM Closed_Request), false);
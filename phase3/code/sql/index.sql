@@ -0,0 +1,3 @@
+-- Indexes are created by the numbered migrations, which MechanicShop
+-- applies with its migrate command. They can also be run by hand:
+\ir migrations/001_report_indexes.sql
@@ -0,0 +1,30 @@
+------------------------------------
+-- INDEXES FOR THE REPORT QUERIES --
+------------------------------------
+-- create.sql only declares primary keys, so every report join and filter
+-- below fell back to sequential scans.
+
+-- Service_Request -> Car joins, with odometer for the < 50000 filter (option 8)
+CREATE INDEX IF NOT EXISTS service_request_car_vin_odometer_idx
+	ON Service_Request (car_vin, odometer);
+
+-- Service_Request -> Customer joins and GROUP BY customer_id (options 6, 10)
+CREATE INDEX IF NOT EXISTS service_request_customer_id_rid_idx
+	ON Service_Request (customer_id, rid);
+
+-- Closed_Request -> Service_Request joins, covering bill for SUM(bill) (options 6, 10)
+CREATE INDEX IF NOT EXISTS closed_request_rid_bill_idx
+	ON Closed_Request (rid, bill);
+
+-- Owns -> Customer joins and GROUP BY customer_id (option 7)
+CREATE INDEX IF NOT EXISTS owns_customer_id_idx
+	ON Owns (customer_id);
+
+-- Car filter on year < 1995 (option 8)
+CREATE INDEX IF NOT EXISTS car_year_vin_idx
+	ON Car (year, vin);
+
+ANALYZE Service_Request;
+ANALYZE Closed_Request;
+ANALYZE Owns;
+ANALYZE Car;
@@ -0,0 +1,94 @@
+------------------------------
+-- PER-CUSTOMER BILL TOTALS --
+------------------------------
+-- Options 6 and 10 rank customers by the sum of their closed request
+-- bills. Instead of re-aggregating Closed_Request on every call, the
+-- totals are kept here and updated by triggers as requests are closed,
+-- changed or removed.
+
+CREATE TABLE IF NOT EXISTS customer_bill_totals
+(
+	customer_id INTEGER NOT NULL,
+	total_bill BIGINT NOT NULL,
+	closed_count INTEGER NOT NULL,
+	PRIMARY KEY (customer_id),
+	FOREIGN KEY (customer_id) REFERENCES Customer(id)
+);
+
+CREATE INDEX IF NOT EXISTS customer_bill_totals_total_bill_idx
+	ON customer_bill_totals (total_bill DESC, customer_id);
+
+-- adds delta_bill and delta_count to the totals of one customer
+CREATE OR REPLACE FUNCTION add_customer_bill(cid INTEGER, delta_bill BIGINT, delta_count INTEGER)
+ RETURNS void AS
+ $BODY$
+ BEGIN
+   INSERT INTO customer_bill_totals (customer_id, total_bill, closed_count)
+   VALUES (cid, delta_bill, delta_count)
+   ON CONFLICT (customer_id) DO UPDATE
+   SET total_bill = customer_bill_totals.total_bill + EXCLUDED.total_bill,
+       closed_count = customer_bill_totals.closed_count + EXCLUDED.closed_count;
+ END;
+ $BODY$
+ LANGUAGE plpgsql VOLATILE;
+
+CREATE OR REPLACE FUNCTION closed_request_bill_totals()
+ RETURNS "trigger" AS
+ $BODY$
+ BEGIN
+   IF TG_OP IN ('UPDATE', 'DELETE') THEN
+     PERFORM add_customer_bill(S.customer_id, -OLD.bill, -1)
+     FROM Service_Request S WHERE S.rid = OLD.rid;
+   END IF;
+   IF TG_OP IN ('INSERT', 'UPDATE') THEN
+     PERFORM add_customer_bill(S.customer_id, NEW.bill, 1)
+     FROM Service_Request S WHERE S.rid = NEW.rid;
+   END IF;
+   RETURN NULL;
+ END;
+ $BODY$
+ LANGUAGE plpgsql VOLATILE;
+
+-- a request moved to another customer takes its closed bills with it
+CREATE OR REPLACE FUNCTION service_request_bill_totals()
+ RETURNS "trigger" AS
+ $BODY$
+ DECLARE
+   moved_bill BIGINT;
+   moved_count INTEGER;
+ BEGIN
+   SELECT COALESCE(SUM(CR.bill), 0), COUNT(*) INTO moved_bill, moved_count
+   FROM Closed_Request CR WHERE CR.rid = NEW.rid;
+   IF moved_count > 0 THEN
+     PERFORM add_customer_bill(OLD.customer_id, -moved_bill, -moved_count);
+     PERFORM add_customer_bill(NEW.customer_id, moved_bill, moved_count);
+   END IF;
+   RETURN NULL;
+ END;
+ $BODY$
+ LANGUAGE plpgsql VOLATILE;
+
+DROP TRIGGER IF EXISTS ClosedRequestBillTotalsTrigger ON Closed_Request;
+CREATE TRIGGER ClosedRequestBillTotalsTrigger
+ AFTER INSERT OR UPDATE OF rid, bill OR DELETE
+ ON Closed_Request
+ FOR EACH ROW
+ EXECUTE PROCEDURE closed_request_bill_totals();
+
+DROP TRIGGER IF EXISTS ServiceRequestBillTotalsTrigger ON Service_Request;
+CREATE TRIGGER ServiceRequestBillTotalsTrigger
+ AFTER UPDATE OF customer_id
+ ON Service_Request
+ FOR EACH ROW
+ WHEN (OLD.customer_id IS DISTINCT FROM NEW.customer_id)
+ EXECUTE PROCEDURE service_request_bill_totals();
+
+-- backfill from the requests closed before the triggers existed
+TRUNCATE customer_bill_totals;
+INSERT INTO customer_bill_totals (customer_id, total_bill, closed_count)
+SELECT S.customer_id, SUM(CR.bill), COUNT(*)
+FROM Service_Request S, Closed_Request CR
+WHERE S.rid = CR.rid
+GROUP BY S.customer_id;
+
+ANALYZE customer_bill_totals;
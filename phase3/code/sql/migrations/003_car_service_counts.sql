@@ -0,0 +1,61 @@
+----------------------------
+-- PER-CAR SERVICE COUNTS --
+----------------------------
+-- Option 9 lists the K cars with the most service requests. The counts
+-- are kept here by a trigger on Service_Request, and the descending index
+-- turns the top K into a bounded index scan instead of a GROUP BY over
+-- every request.
+
+CREATE TABLE IF NOT EXISTS car_service_counts
+(
+	car_vin VARCHAR(16) NOT NULL,
+	service_count INTEGER NOT NULL,
+	PRIMARY KEY (car_vin),
+	FOREIGN KEY (car_vin) REFERENCES Car(vin)
+);
+
+CREATE INDEX IF NOT EXISTS car_service_counts_service_count_idx
+	ON car_service_counts (service_count DESC, car_vin);
+
+CREATE OR REPLACE FUNCTION service_request_car_counts()
+ RETURNS "trigger" AS
+ $BODY$
+ BEGIN
+   IF TG_OP IN ('UPDATE', 'DELETE') THEN
+     UPDATE car_service_counts SET service_count = service_count - 1
+     WHERE car_vin = OLD.car_vin;
+   END IF;
+   IF TG_OP IN ('INSERT', 'UPDATE') THEN
+     INSERT INTO car_service_counts (car_vin, service_count)
+     VALUES (NEW.car_vin, 1)
+     ON CONFLICT (car_vin) DO UPDATE
+     SET service_count = car_service_counts.service_count + 1;
+   END IF;
+   RETURN NULL;
+ END;
+ $BODY$
+ LANGUAGE plpgsql VOLATILE;
+
+DROP TRIGGER IF EXISTS ServiceRequestCarCountsTrigger ON Service_Request;
+CREATE TRIGGER ServiceRequestCarCountsTrigger
+ AFTER INSERT OR DELETE
+ ON Service_Request
+ FOR EACH ROW
+ EXECUTE PROCEDURE service_request_car_counts();
+
+DROP TRIGGER IF EXISTS ServiceRequestCarMovedTrigger ON Service_Request;
+CREATE TRIGGER ServiceRequestCarMovedTrigger
+ AFTER UPDATE OF car_vin
+ ON Service_Request
+ FOR EACH ROW
+ WHEN (OLD.car_vin IS DISTINCT FROM NEW.car_vin)
+ EXECUTE PROCEDURE service_request_car_counts();
+
+-- backfill from the requests made before the trigger existed
+TRUNCATE car_service_counts;
+INSERT INTO car_service_counts (car_vin, service_count)
+SELECT S.car_vin, COUNT(*)
+FROM Service_Request S
+GROUP BY S.car_vin;
+
+ANALYZE car_service_counts;
@@ -0,0 +1,39 @@
+-------------------
+-- CLOSE REQUEST --
+-------------------
+-- Option 5 closes a service request with a single call to close_request,
+-- which validates the request, the mechanic and the closing date and
+-- inserts the closed request on the server, in one round trip.
+--
+-- The request row is locked first, so two clerks closing the same request
+-- at once are serialized and only the first one succeeds.
+
+CREATE OR REPLACE FUNCTION close_request(req_id INTEGER, mech_id INTEGER, closed_on DATE,
+                                         note TEXT, amount INTEGER, new_wid INTEGER DEFAULT NULL)
+ RETURNS INTEGER AS
+ $BODY$
+ DECLARE
+   opened_on DATE;
+   w INTEGER;
+ BEGIN
+   SELECT S.date INTO opened_on FROM Service_Request S WHERE S.rid = req_id FOR UPDATE;
+   IF NOT FOUND THEN
+     RAISE EXCEPTION 'Service request % does not exist', req_id;
+   END IF;
+   IF EXISTS (SELECT 1 FROM Closed_Request CR WHERE CR.rid = req_id) THEN
+     RAISE EXCEPTION 'Service request % is already closed', req_id;
+   END IF;
+   IF NOT EXISTS (SELECT 1 FROM Mechanic M WHERE M.id = mech_id) THEN
+     RAISE EXCEPTION 'There is no mechanic with id %', mech_id;
+   END IF;
+   IF closed_on < opened_on THEN
+     RAISE EXCEPTION 'Service request % was opened on %, after %', req_id, opened_on, closed_on;
+   END IF;
+   -- the client passes a wid from its block of closed_request_wid_seq
+   w := COALESCE(new_wid, nextval('closed_request_wid_seq')::INTEGER);
+   INSERT INTO Closed_Request (wid, rid, mid, date, comment, bill)
+   VALUES (w, req_id, mech_id, closed_on, note, amount);
+   RETURN w;
+ END;
+ $BODY$
+ LANGUAGE plpgsql VOLATILE;
@@ -0,0 +1,36 @@
+------------------
+-- ID SEQUENCES --
+------------------
+-- MechanicShop allocates ids in blocks of 100 from these sequences (see
+-- IdAllocator.BLOCK_SIZE), but only create.sql created them, so a database
+-- that was not rebuilt from scratch could not add anything. This creates
+-- any missing sequence, makes sure every one steps by 100 and moves it past
+-- both the ids already in the tables and any block already handed out.
+
+CREATE SEQUENCE IF NOT EXISTS customer_id_seq INCREMENT BY 100 CACHE 1;
+CREATE SEQUENCE IF NOT EXISTS mechanic_id_seq INCREMENT BY 100 CACHE 1;
+CREATE SEQUENCE IF NOT EXISTS owns_ownership_id_seq INCREMENT BY 100 CACHE 1;
+CREATE SEQUENCE IF NOT EXISTS service_request_rid_seq INCREMENT BY 100 CACHE 1;
+CREATE SEQUENCE IF NOT EXISTS closed_request_wid_seq INCREMENT BY 100 CACHE 1;
+
+ALTER SEQUENCE customer_id_seq INCREMENT BY 100 CACHE 1;
+ALTER SEQUENCE mechanic_id_seq INCREMENT BY 100 CACHE 1;
+ALTER SEQUENCE owns_ownership_id_seq INCREMENT BY 100 CACHE 1;
+ALTER SEQUENCE service_request_rid_seq INCREMENT BY 100 CACHE 1;
+ALTER SEQUENCE closed_request_wid_seq INCREMENT BY 100 CACHE 1;
+
+SELECT setval('customer_id_seq', GREATEST(
+	(SELECT COALESCE(MAX(id), 0) + 1 FROM Customer),
+	(SELECT CASE WHEN is_called THEN last_value + 100 ELSE last_value END FROM customer_id_seq)), false);
+SELECT setval('mechanic_id_seq', GREATEST(
+	(SELECT COALESCE(MAX(id), 0) + 1 FROM Mechanic),
+	(SELECT CASE WHEN is_called THEN last_value + 100 ELSE last_value END FROM mechanic_id_seq)), false);
+SELECT setval('owns_ownership_id_seq', GREATEST(
+	(SELECT COALESCE(MAX(ownership_id), 0) + 1 FROM Owns),
+	(SELECT CASE WHEN is_called THEN last_value + 100 ELSE last_value END FROM owns_ownership_id_seq)), false);
+SELECT setval('service_request_rid_seq', GREATEST(
+	(SELECT COALESCE(MAX(rid), 0) + 1 FROM Service_Request),
+	(SELECT CASE WHEN is_called THEN last_value + 100 ELSE last_value END FROM service_request_rid_seq)), false);
+SELECT setval('closed_request_wid_seq', GREATEST(
+	(SELECT COALESCE(MAX(wid), 0) + 1 FROM Closed_Request),
+	(SELECT CASE WHEN is_called THEN last_value + 100 ELSE last_value END FROM closed_request_wid_seq)), false);
@@ -0,0 +1,12 @@
+-----------------------------
+-- VIN ORDER FOR THE TOP K --
+-----------------------------
+-- Option 9 breaks ties between equal service counts on the VIN. Small K is
+-- ordered by the server and large K by a heap in MechanicShop that compares
+-- VINs as Java strings, so both sort the VIN in the "C" collation, byte
+-- order, which matches Java for the ASCII VINs of the data. The index is
+-- rebuilt with that collation so the small K stays a bounded index scan.
+
+DROP INDEX IF EXISTS car_service_counts_service_count_idx;
+CREATE INDEX car_service_counts_service_count_idx
+	ON car_service_counts (service_count DESC, car_vin COLLATE "C");